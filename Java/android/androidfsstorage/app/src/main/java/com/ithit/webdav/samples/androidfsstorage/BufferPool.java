@@ -0,0 +1,137 @@
+package com.ithit.webdav.samples.androidfsstorage;
+
+import java.lang.ref.SoftReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide pool of the buffers used to copy file content.
+ * Each thread keeps the last released buffer for its next transfer, other released buffers are shared
+ * between threads. Number of shared buffers is bounded, buffers released above the bound and buffers
+ * kept by the finished threads are left to the garbage collector.
+ */
+final class BufferPool {
+
+    static final int BUFFER_SIZE = 1048576; // 1 Mb
+    private static final int MAX_SHARED = 4;
+    private static final BufferPool INSTANCE = new BufferPool(BUFFER_SIZE, MAX_SHARED);
+
+    private final int bufferSize;
+    private final int maxShared;
+    private final ThreadLocal<SoftReference<byte[]>> threadBuffer = new ThreadLocal<>();
+    private final Queue<byte[]> sharedBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger shared = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    /**
+     * Creates instance of {@link BufferPool}.
+     *
+     * @param bufferSize Size of the buffers in bytes.
+     * @param maxShared  Maximum number of released buffers shared between threads.
+     */
+    BufferPool(int bufferSize, int maxShared) {
+        this.bufferSize = bufferSize;
+        this.maxShared = maxShared;
+    }
+
+    /**
+     * Returns process-wide pool of {@link #BUFFER_SIZE} buffers.
+     *
+     * @return {@link BufferPool} instance.
+     */
+    static BufferPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns buffer from the pool or allocates new one if the pool is empty.
+     * Buffer must be returned with {@link #release(byte[])} when transfer is completed.
+     *
+     * @return Buffer of the pool size.
+     */
+    byte[] acquire() {
+        inUse.incrementAndGet();
+        SoftReference<byte[]> reference = threadBuffer.get();
+        byte[] buffer = reference != null ? reference.get() : null;
+        if (buffer != null) {
+            threadBuffer.remove();
+        } else {
+            buffer = sharedBuffers.poll();
+            if (buffer != null) {
+                shared.decrementAndGet();
+            }
+        }
+        if (buffer != null) {
+            reused.incrementAndGet();
+            return buffer;
+        }
+        allocated.incrementAndGet();
+        return new byte[bufferSize];
+    }
+
+    /**
+     * Returns buffer to the pool.
+     *
+     * @param buffer Buffer returned by {@link #acquire()}.
+     */
+    void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        inUse.decrementAndGet();
+        SoftReference<byte[]> reference = threadBuffer.get();
+        if (reference == null || reference.get() == null) {
+            threadBuffer.set(new SoftReference<>(buffer));
+        } else if (shared.incrementAndGet() <= maxShared) {
+            sharedBuffers.offer(buffer);
+        } else {
+            shared.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns number of buffers currently used by transfers.
+     *
+     * @return Number of acquired buffers.
+     */
+    int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Returns number of released buffers shared between threads.
+     *
+     * @return Number of shared buffers.
+     */
+    int getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Returns number of buffers allocated because the pool was empty.
+     *
+     * @return Number of allocated buffers.
+     */
+    long getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * Returns number of buffers served from the pool.
+     *
+     * @return Number of reused buffers.
+     */
+    long getReused() {
+        return reused.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Buffer pool: " + inUse.get() + " in use, " + shared.get() + " shared, "
+                + allocated.get() + " allocated, " + reused.get() + " reused";
+    }
+}
@@ -31,7 +31,6 @@ import java.util.Objects;
 class FileImpl extends HierarchyItemImpl implements File, Lock,
         ResumableUpload, UploadProgress {
 
-    private int bufferSize = 1048576; // 1 Mb
 
     /**
      * Initializes a new instance of the {@link FileImpl} class.
@@ -200,7 +199,7 @@ class FileImpl extends HierarchyItemImpl implements File, Lock,
     @Override
     public void read(OutputStream out, long startIndex, long count) throws ServerException {
         java.io.File fullPath = FileUtils.getFile(this.getFullPath());
-        byte[] buf = new byte[bufferSize];
+        byte[] buf = BufferPool.getInstance().acquire();
         int retVal;
         InputStream in = null;
         try {
@@ -219,6 +218,7 @@ class FileImpl extends HierarchyItemImpl implements File, Lock,
             throw new ServerException(x);
         } finally {
             IOUtils.closeQuietly(in);
+            BufferPool.getInstance().release(buf);
         }
     }
 
@@ -247,11 +247,13 @@ class FileImpl extends HierarchyItemImpl implements File, Lock,
             }
         }
         FileOutputStream fos = new FileOutputStream(fullPath);
+        byte[] buf = BufferPool.getInstance().acquire();
         try {
             incrementSerialNumber();
-            return IOUtils.copyLarge(content, fos, startIndex, totalFileLength, new byte[bufferSize]);
+            return IOUtils.copyLarge(content, fos, startIndex, totalFileLength, buf);
         } finally {
             IOUtils.closeQuietly(fos);
+            BufferPool.getInstance().release(buf);
         }
     }
 
@@ -0,0 +1,167 @@
+package com.ithit.webdav.samples.fsstorageservlet;
+
+import com.ithit.webdav.server.Logger;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compares listing and sorting of the folder children by {@link FolderImpl}, which reads attributes of all
+ * children in one pass and sorts them on the sort keys, with listing the folder and sorting it with the
+ * comparator chain that reads attributes of the files while comparing them. Both include the file system
+ * calls, only creating of the files is done before measurement.
+ * <p>
+ * Run with: mvn -P jmh test-compile exec:exec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FolderSortBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final String[] EXTENSIONS = {"txt", "docx", "pdf", "png", "java"};
+
+    private static final Logger LOGGER = new Logger() {
+        @Override
+        public void logDebug(String message) {
+        }
+
+        @Override
+        public void logError(String message, Throwable throwable) {
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    };
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    @Param({"displayname", "getlastmodified", "is-directory,quota-used-bytes"})
+    public String order;
+
+    private Path folder;
+    private Map<String, Boolean> sortOrder;
+
+    @Setup(Level.Trial)
+    public void createFolder() throws IOException {
+        folder = Files.createTempDirectory("folder-sort");
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < entries; i++) {
+            Path path = folder.resolve(Integer.toHexString(random.nextInt()) + "-" + i + "."
+                    + EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            if (random.nextInt(10) == 0) {
+                Files.createDirectory(path);
+            } else {
+                Files.write(path, new byte[random.nextInt(1024)]);
+            }
+            Files.setLastModifiedTime(path, FileTime.fromMillis(now - random.nextInt(Integer.MAX_VALUE)));
+        }
+        sortOrder = new LinkedHashMap<>();
+        for (String property : order.split(",")) {
+            sortOrder.put(property, true);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFolder() throws IOException {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    // Listing and sorting as FolderImpl.getChildren did before the sort keys.
+    @Benchmark
+    public List<Path> comparatorChain() throws IOException {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(folder)) {
+            List<Path> paths = StreamSupport.stream(ds.spliterator(), false).collect(Collectors.toList());
+            return paths.stream().sorted(comparatorChain(sortOrder)).collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public List<Path> sortKeys() throws IOException {
+        Map<Path, BasicFileAttributes> attributes = FolderImpl.readChildrenAttributes(folder, LOGGER);
+        List<Path> paths = new ArrayList<>(attributes.keySet());
+        return FolderImpl.sortChildren(paths, attributes, sortOrder, paths.size());
+    }
+
+    @Benchmark
+    public List<Path> sortKeysFirstPage() throws IOException {
+        Map<Path, BasicFileAttributes> attributes = FolderImpl.readChildrenAttributes(folder, LOGGER);
+        List<Path> paths = new ArrayList<>(attributes.keySet());
+        return FolderImpl.sortChildren(paths, attributes, sortOrder, Math.min(PAGE_SIZE, paths.size()));
+    }
+
+    // Comparator chain that FolderImpl used before the sort keys.
+    private static Comparator<Path> comparatorChain(Map<String, Boolean> sortOrder) {
+        Comparator<Path> comparator = null;
+        for (Map.Entry<String, Boolean> entry : sortOrder.entrySet()) {
+            Comparator<Path> tempComp = null;
+            if ("is-directory".equals(entry.getKey())) {
+                Function<Path, Boolean> sortFunc = item -> item.toFile().isDirectory();
+                tempComp = Comparator.comparing(sortFunc);
+            }
+            if ("quota-used-bytes".equals(entry.getKey())) {
+                Function<Path, Long> sortFunc = item -> item.toFile().length();
+                tempComp = Comparator.comparing(sortFunc);
+            }
+            if ("getlastmodified".equals(entry.getKey())) {
+                Function<Path, Long> sortFunc = item -> item.toFile().lastModified();
+                tempComp = Comparator.comparing(sortFunc);
+            }
+            if ("displayname".equals(entry.getKey())) {
+                Function<Path, String> sortFunc = item -> item.getFileName().toString();
+                tempComp = Comparator.comparing(sortFunc);
+            }
+            if ("getcontenttype".equals(entry.getKey())) {
+                Function<Path, String> sortFunc = item -> getExtension(item.getFileName().toString());
+                tempComp = Comparator.comparing(sortFunc);
+            }
+            if (tempComp != null) {
+                if (!entry.getValue()) {
+                    tempComp = tempComp.reversed();
+                }
+                comparator = comparator != null ? comparator.thenComparing(tempComp) : tempComp;
+            }
+        }
+        return comparator;
+    }
+
+    private static String getExtension(String name) {
+        int periodIndex = name.lastIndexOf('.');
+        return periodIndex == -1 ? "" : name.substring(periodIndex + 1);
+    }
+}
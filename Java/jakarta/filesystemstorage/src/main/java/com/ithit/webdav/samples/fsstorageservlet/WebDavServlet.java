@@ -37,6 +37,7 @@ public class WebDavServlet extends HttpServletDav {
     private static String servletContext;
     private static String rootLocalPath;
     private static boolean supportsUserDefinedAttributes;
+    private static MetadataCache metadataCache = new MetadataCache(MetadataCache.DEFAULT_SIZE);
     private Logger logger;
     private boolean showExceptions;
     private SearchFacade searchFacade;
@@ -81,6 +82,15 @@ public class WebDavServlet extends HttpServletDav {
         return supportsUserDefinedAttributes;
     }
 
+    /**
+     * Returns process-wide cache of the items metadata stored in extended attributes.
+     *
+     * @return Metadata cache.
+     */
+    static MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
     /**
      * Servlet initialization logic. Reads license file here. Creates instance of {@link com.ithit.webdav.server.Engine}.
      *
@@ -104,17 +114,31 @@ public class WebDavServlet extends HttpServletDav {
         checkRootPath(rootLocalPath);
         String indexLocalPath = createIndexPath();
         supportsUserDefinedAttributes = ExtendedAttributesExtension.isExtendedAttributesSupported(Paths.get(getRootLocalPath()).toString());
-        WebDavEngine engine = new WebDavEngine(logger, license, localMaskRequestHeaders);
-        String indexInterval = servletConfig.getInitParameter("index-interval");
-        Integer interval = null;
-        if (indexInterval != null) {
+        Integer interval = parseInteger(servletConfig.getInitParameter("index-interval"));
+        String metadataCacheSize = servletConfig.getInitParameter("metadata-cache-size");
+        if (metadataCacheSize != null) {
             try {
-                interval = Integer.valueOf(indexInterval);
+                metadataCache = new MetadataCache(Integer.parseInt(metadataCacheSize));
             } catch (NumberFormatException ignored) {}
         }
+        Integer refreshInterval = parseInteger(servletConfig.getInitParameter("search-refresh-interval"));
+        Integer indexThreads = parseInteger(servletConfig.getInitParameter("index-threads"));
+        Integer indexWorkers = parseInteger(servletConfig.getInitParameter("index-workers"));
+        Integer indexQueueSize = parseInteger(servletConfig.getInitParameter("index-queue-size"));
+        Integer parserThreads = parseInteger(servletConfig.getInitParameter("index-parser-threads"));
+        Integer parseTimeout = parseInteger(servletConfig.getInitParameter("index-parse-timeout"));
+        Integer maxFileSize = parseInteger(servletConfig.getInitParameter("index-max-file-size"));
+        String contentTypes = servletConfig.getInitParameter("index-content-types");
+        Integer ramBufferSize = parseInteger(servletConfig.getInitParameter("index-ram-buffer-size"));
+        Integer segmentsPerTier = parseInteger(servletConfig.getInitParameter("index-segments-per-tier"));
+        Integer mergeThreads = parseInteger(servletConfig.getInitParameter("index-merge-threads"));
+        Integer mergeHour = parseInteger(servletConfig.getInitParameter("index-merge-hour"));
         if (rootLocalPath != null && indexLocalPath != null) {
-            searchFacade = new SearchFacade(engine, logger);
-            searchFacade.indexRootFolder(rootLocalPath, indexLocalPath, interval);
+            searchFacade = new SearchFacade(logger);
+            searchFacade.indexRootFolder(rootLocalPath, indexLocalPath, interval, refreshInterval, indexThreads,
+                    indexWorkers, indexQueueSize, new SearchFacade.ContentExtractor(parserThreads, parseTimeout,
+                            maxFileSize, contentTypes, logger),
+                    new SearchFacade.WriterSettings(ramBufferSize, segmentsPerTier, mergeThreads, mergeHour));
         }
     }
 
@@ -123,7 +147,18 @@ public class WebDavServlet extends HttpServletDav {
      */
     @Override
     public void destroy() {
-        searchFacade.getIndexer().stop();
+        searchFacade.close();
+        logger.logDebug(metadataCache.toString());
+        logger.logDebug(BufferPool.getInstance().toString());
+    }
+
+    private static Integer parseInteger(String value) {
+        if (value != null) {
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException ignored) {}
+        }
+        return null;
     }
 
     private void checkRootPath(String rootPath) {
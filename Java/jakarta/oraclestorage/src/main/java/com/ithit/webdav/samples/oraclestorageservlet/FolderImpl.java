@@ -9,7 +9,6 @@ import com.ithit.webdav.server.resumableupload.ResumableUploadBase;
 import com.ithit.webdav.server.search.Search;
 import com.ithit.webdav.server.search.SearchOptions;
 
-import java.math.BigDecimal;
 import java.util.*;
 
 /**
@@ -17,7 +16,10 @@ import java.util.*;
  */
 public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quota, ResumableUploadBase {
 
-    private long usedBytes;
+    /**
+     * Query returning IDs of the folder and all items in its subtree.
+     */
+    private static final String SUBTREE_IDS = "SELECT ID FROM Repository START WITH ID = ? CONNECT BY PRIOR ID = Parent AND ID <> 0";
 
     /**
      * Initializes a new instance of the {@link FolderImpl} class.
@@ -49,7 +51,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         nResults = nResults == null || nResults < 0 ? 10 : nResults;
 
         String sqlBeforeOrder = "SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, " +
-                "TotalContentLength, row_number() over (ORDER BY ";
+                "TotalContentLength, DBMS_LOB.GETLENGTH(Content) AS ContentLength, row_number() over (ORDER BY ";
 
         StringBuilder order = new StringBuilder();
         if (orderProps != null && !orderProps.isEmpty()) {
@@ -60,7 +62,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
                     order.append("ItemType").append(sortPropertyVal).append(", ");
 
                 else if ("quota-used-bytes".equals(sortPropertyName))
-                    order.append("TotalContentLength").append(sortPropertyVal).append(", ");
+                    order.append("DBMS_LOB.GETLENGTH(Content)").append(sortPropertyVal).append(", ");
 
                 else if ("getlastmodified".equals(sortPropertyName))
                     order.append("Modified").append(sortPropertyVal).append(", ");
@@ -88,6 +90,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
                 "SELECT * FROM (" + sqlBeforeOrder + order + sqlAfterOrder + whereQuery +
                         ") WHERE line_number BETWEEN ? AND ? ORDER BY line_number",
                 getPath(), true, id, offset + 1, nResults + offset);
+        prefetch(hierarchyItems);
 
         long hierarchyItemsSize = getDataAccess()
                 .executeInt("SELECT COUNT(ID) FROM Repository " + whereQuery, id);
@@ -95,6 +98,51 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         return new PageResults(hierarchyItems, hierarchyItemsSize);
     }
 
+    /**
+     * Reads properties and locks of the children with a few queries for all of them,
+     * so that the engine does not query DB for each child when building the response.
+     *
+     * @param children Children of this folder.
+     * @throws ServerException in case of DB errors.
+     */
+    private void prefetch(List<HierarchyItemImpl> children) throws ServerException {
+        if (children.isEmpty())
+            return;
+        List<Integer> ids = new ArrayList<>(children.size());
+        Map<Integer, List<Property>> properties = new HashMap<>();
+        Map<Integer, List<LockInfo>> locks = new HashMap<>();
+        for (HierarchyItemImpl child : children) {
+            ids.add(child.getId());
+            properties.put(child.getId(), new ArrayList<>());
+            locks.put(child.getId(), new ArrayList<>());
+        }
+        getDataAccess().readObjectsByIds("SELECT ItemID, Name, Namespace, PropVal"
+                + " FROM Properties"
+                + " WHERE ItemID IN (?)", rs -> {
+            properties.get(rs.getInt("ItemID")).add(DataAccess.readProperty(rs));
+            return null;
+        }, ids);
+        getDataAccess().readObjectsByIds("SELECT ItemID, Token, Shared, Deep, Expires, Owner"
+                + " FROM Locks"
+                + " WHERE ItemID IN (?)", rs -> {
+            LockInfo lock = DataAccess.readLock(rs);
+            if (lock != null)
+                locks.get(rs.getInt("ItemID")).add(lock);
+            return null;
+        }, ids);
+        // Children inherit deep locks of this folder and its parents, locks of the root folder are not inherited.
+        List<LockInfo> inherited = new ArrayList<>();
+        if (getId() > 0)
+            for (LockInfo lock : getActiveLocks())
+                if (lock.isDeep())
+                    inherited.add(lock);
+        for (HierarchyItemImpl child : children) {
+            List<LockInfo> childLocks = locks.get(child.getId());
+            childLocks.addAll(inherited);
+            child.setPrefetched(properties.get(child.getId()), childLocks);
+        }
+    }
+
     /**
      * Creates new {@link FileImpl} file with the specified name in this folder.
      *
@@ -152,7 +200,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         HierarchyItemImpl item = null;
         if (itemType == ItemType.FILE) {
             long now = new Date().getTime();
-            item = new FileImpl(newId, getId(), name, getPath() + name, now, now, now, 0, getEngine());
+            item = new FileImpl(newId, getId(), name, getPath() + name, now, now, now, 0, 0, getEngine());
         }
         return item;
 
@@ -177,7 +225,8 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
      * @throws ServerException in case of DB errors.
      */
     HierarchyItemImpl findChild(String childName) throws ServerException {
-        return getDataAccess().readItem("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength"
+        return getDataAccess().readItem("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength,"
+                + " DBMS_LOB.GETLENGTH(Content) AS ContentLength"
                 + " FROM Repository"
                 + " WHERE Parent = ?"
                 + " AND Name = ?", getPath(), true, getId(), childName);
@@ -199,21 +248,41 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         ensureHasToken();
         destFolder.ensureHasToken();
         parent.ensureHasToken();
+        if (isRecursive(destFolder)) {
+            throw new ServerException("Cannot move to subfolder", WebDavStatus.FORBIDDEN);
+        }
 
         HierarchyItemImpl destItem = destFolder.findChild(destName);
-        FolderImpl newDestFolder;
-
-        // copy this folder
-        if (destItem != null) {
-            if (destItem instanceof File) {
+        if (destItem instanceof FolderImpl) {
+            mergeInto((FolderImpl) destItem, recursionDepth);
+        } else {
+            ensureNoLockedDescendants();
+            if (destItem != null) {
                 destItem.deleteInternal(recursionDepth + 1);
-                newDestFolder = (FolderImpl) copyThisItem(destFolder, null, destName);
-            } else {
-                newDestFolder = getDataAccess().getFolderImpl(destItem);
             }
-        } else {
-            newDestFolder = (FolderImpl) copyThisItem(destFolder, null, destName);
+            // Only the folder row is re-parented, items in the subtree keep their IDs. Moved items are not locked.
+            getDataAccess().executeUpdate("DELETE FROM Locks WHERE ItemID IN (" + SUBTREE_IDS + ")", getId());
+            moveThisItem(destFolder, destName, parent);
+            try {
+                getEngine().getSearchFacade().getIndexer().indexFile(destName, getId(), getId(), this);
+            } catch (Exception ex) {
+                getEngine().getLogger().logError("Errors during indexing.", ex);
+            }
+        }
+        if (recursionDepth == 0) {
+            getEngine().getWebSocketServer().notifyMoved(getPath(), folder.getPath() + getDataAccess().encode(destName), getWebSocketID());
         }
+    }
+
+    /**
+     * Moves children of this folder into the existing folder item by item and deletes this folder.
+     *
+     * @param newDestFolder  Existing destination folder.
+     * @param recursionDepth Recursion depth of the move operation.
+     * @throws MultistatusException if some children cannot be moved.
+     * @throws ServerException      in case of DB errors.
+     */
+    private void mergeInto(FolderImpl newDestFolder, int recursionDepth) throws MultistatusException, ServerException {
         // move children
         MultistatusException mr = new MultistatusException();
         for (HierarchyItem child : getChildren(Collections.emptyList(), null, null, null).getPage()) {
@@ -235,9 +304,6 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         }
         // delete this folder
         deleteThisItem();
-        if (recursionDepth == 0) {
-            getEngine().getWebSocketServer().notifyMoved(getPath(), folder.getPath() + getDataAccess().encode(destName), getWebSocketID());
-        }
     }
 
     @Override
@@ -256,18 +322,18 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         if (isRecursive(destFolder)) {
             throw new ServerException("Cannot copy to subfolder", WebDavStatus.FORBIDDEN);
         }
-        FolderImpl newDestFolder;
-
-        if (destItem != null) {
-            if (destItem instanceof File) {
+        if (!(destItem instanceof FolderImpl)) {
+            if (destItem != null) {
                 destItem.deleteInternal(recursionDepth + 1);
-                newDestFolder = (FolderImpl) copyThisItem(destFolder, null, destName);
-            } else {
-                newDestFolder = getDataAccess().getFolderImpl(destItem);
             }
-        } else {
-            newDestFolder = (FolderImpl) copyThisItem(destFolder, null, destName);
+            copyThisTree(destFolder, destName, deep);
+            if (recursionDepth == 0) {
+                getEngine().getWebSocketServer().notifyCreated(folder.getPath() + getDataAccess().encode(destName), getWebSocketID());
+            }
+            return;
         }
+        // Existing folder is merged with this one item by item.
+        FolderImpl newDestFolder = (FolderImpl) destItem;
 
         try {
             getEngine().getSearchFacade().getIndexer().indexFile(newDestFolder.getName(), newDestFolder.getId(), null, this);
@@ -316,25 +382,14 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         getParent().ensureHasToken();
         ensureHasToken();
 
-        MultistatusException mx = new MultistatusException();
-
-        for (HierarchyItem child : getChildren(Collections.emptyList(), null, null, null).getPage()) {
-            try {
-                ((HierarchyItemImpl)child).deleteInternal(recursionDepth + 1);
-            } catch (MultistatusException ex) {
-                mx.addResponses(ex.getResponses());
-            }
-        }
-        if (mx.getResponses().length > 0)
-            throw mx;
-        else {
-            try {
-                getEngine().getSearchFacade().getIndexer().deleteIndex(this);
-            } catch (Exception ex) {
-                getEngine().getLogger().logError("Errors during indexing.", ex);
-            }
-            deleteThisItem();
+        ensureNoLockedDescendants();
+        List<Integer> ids = getDataAccess().readObjects(SUBTREE_IDS, rs -> rs.getInt(1), getId());
+        try {
+            getEngine().getSearchFacade().getIndexer().deleteIndex(ids);
+        } catch (Exception ex) {
+            getEngine().getLogger().logError("Errors during indexing.", ex);
         }
+        removeTree();
         if (recursionDepth == 0) {
             getEngine().getWebSocketServer().notifyDeleted(getPath(), getWebSocketID());
         }
@@ -346,14 +401,78 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
      * @throws ServerException in case of DB errors.
      */
     void removeTree() throws ServerException {
-        for (HierarchyItem child : getChildren(Collections.emptyList(), null, null, null).getPage()) {
-            FolderImpl childFolder = child instanceof FolderImpl ? (FolderImpl) child : null;
-            if (childFolder != null)
-                childFolder.removeTree();
-            else
-                ((HierarchyItemImpl)child).deleteThisItem();
+        getDataAccess().invalidatePath(getPath());
+        getDataAccess().executeUpdate("DELETE FROM Locks WHERE ItemID IN (" + SUBTREE_IDS + ")", getId());
+        getDataAccess().executeUpdate("DELETE FROM Properties WHERE ItemID IN (" + SUBTREE_IDS + ")", getId());
+        getDataAccess().executeUpdate("DELETE FROM Repository WHERE ID IN (" + SUBTREE_IDS + ")", getId());
+    }
+
+    /**
+     * Copies this folder with all items in its subtree in bulk. New IDs are assigned to the copies
+     * and parent references of the copies are remapped to the new IDs.
+     *
+     * @param destFolder Destination folder.
+     * @param destName   Name of the copy.
+     * @param deep       Whether to copy the items in the subtree.
+     * @throws ServerException in case of DB errors.
+     */
+    private void copyThisTree(FolderImpl destFolder, String destName, boolean deep) throws ServerException {
+        // Items are returned in hierarchical order, so the parent is always copied before its children.
+        List<HierarchyItemImpl> items = deep ? getDataAccess().readItems("SELECT ID, Parent, ItemType, Name, Created, Modified,"
+                + " LastChunkSaved, TotalContentLength, DBMS_LOB.GETLENGTH(Content) AS ContentLength FROM Repository"
+                + " START WITH ID = ? CONNECT BY PRIOR ID = Parent AND ID <> 0", getPath(), false, getId())
+                : Collections.singletonList(this);
+        List<Integer> newIds = getDataAccess().readObjects("SELECT \"REPOSITORY_SEQ\".nextval FROM dual CONNECT BY LEVEL <= ?",
+                rs -> rs.getInt(1), items.size());
+        Map<Integer, Integer> copies = new HashMap<>();
+        List<Object[]> itemRows = new ArrayList<>(items.size());
+        List<Object[]> propertyRows = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            HierarchyItemImpl item = items.get(i);
+            int newId = newIds.get(i);
+            copies.put(item.getId(), newId);
+            itemRows.add(new Object[]{newId, i == 0 ? destName : item.getName(),
+                    i == 0 ? destFolder.getId() : copies.get(item.getParentId()), item.getId()});
+            propertyRows.add(new Object[]{newId, item.getId()});
+        }
+        getDataAccess().executeBatch("INSERT INTO Repository"
+                + " (ID, Name, Created, Modified, Parent, ItemType, ContentType, Content, TotalContentLength, LastChunkSaved, SerialNumber)"
+                + " SELECT ?, ?, SYSDATE, SYSDATE, ?, ItemType, ContentType, Content, TotalContentLength, LastChunkSaved, 1"
+                + " FROM Repository"
+                + " WHERE ID = ?", itemRows);
+        getDataAccess().executeBatch("INSERT INTO Properties"
+                + " (ItemID, Name, Namespace, PropVal)"
+                + " SELECT ?, Name, Namespace, PropVal"
+                + " FROM Properties"
+                + " WHERE ItemID = ?", propertyRows);
+        destFolder.updateModified();
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                HierarchyItemImpl item = items.get(i);
+                getEngine().getSearchFacade().getIndexer().indexFile(i == 0 ? destName : item.getName(), newIds.get(i), null, item);
+            }
+        } catch (Exception ex) {
+            getEngine().getLogger().logError("Errors during indexing.", ex);
         }
-        deleteThisItem();
+    }
+
+    /**
+     * Checks that client provided a lock token for each locked item in the subtree of this folder, the same way
+     * {@link #ensureHasToken()} checks each item. All locked items are reported,
+     * locks of the folder itself are checked by {@link #ensureHasToken()}.
+     *
+     * @throws MultistatusException with the locked items.
+     * @throws ServerException      in case of DB errors.
+     */
+    private void ensureNoLockedDescendants() throws MultistatusException, ServerException {
+        List<String> clientLockTokens = DavContext.currentRequest().getClientLockTokens();
+        MultistatusException mx = new MultistatusException();
+        for (Map.Entry<String, List<LockInfo>> entry : getSubtreeLocks().entrySet()) {
+            if (!clientHasToken(entry.getValue(), clientLockTokens))
+                mx.addResponse(entry.getKey(), WebDavStatus.LOCKED);
+        }
+        if (mx.getResponses().length > 0)
+            throw mx;
     }
 
     /**
@@ -365,15 +484,10 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
 
         if (!clientHasToken())
             return false;
-        for (HierarchyItem child : getChildren(Collections.emptyList(), null, null, null).getPage()) {
-            FolderImpl childFolder = child instanceof FolderImpl ? (FolderImpl) child : null;
-            if (childFolder != null) {
-                if (!childFolder.clientHasTokenForTree())
-                    return false;
-            } else {
-                if (!((HierarchyItemImpl)child).clientHasToken())
-                    return false;
-            }
+        List<String> clientLockTokens = DavContext.currentRequest().getClientLockTokens();
+        for (List<LockInfo> itemLocks : getSubtreeLocks().values()) {
+            if (!clientHasToken(itemLocks, clientLockTokens))
+                return false;
         }
         return true;
     }
@@ -420,37 +534,24 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         }
         Map<String, String> searchResult;
         searchResult = searcher.search(searchString, options, snippet);
-        for (Map.Entry<String, String> entry : searchResult.entrySet()) {
-            try {
-                String path = getDataAccess().executeScalar("select path from " +
-                        "  (SELECT id, SYS_CONNECT_BY_PATH(name, '/') path " +
-                        "   FROM REPOSITORY where id = (select min(id) from REPOSITORY) " +
-                        "   START WITH id = ? " +
-                        "   CONNECT BY id = PRIOR parent and parent!= prior id)", entry.getKey());
-                String[] pathParts = path.split("/");
-                pathParts = Arrays.copyOf(pathParts, pathParts.length - 1);
-                StringBuilder pathBuilder = new StringBuilder();
-                for (int i = pathParts.length - 1; i >= 0; i--) {
-                    if (Objects.equals(pathParts[i], "")) {
-                        continue;
-                    }
-                    pathBuilder.append('/');
-                    pathBuilder.append(pathParts[i]);
-                }
-                String itemPath = pathBuilder.toString();
-                String decodedPath = getDataAccess().decode(getPath());
-                if (itemPath.startsWith(decodedPath)) {
-                    HierarchyItem item = getDataAccess().getFile(Integer.parseInt(entry.getKey()), itemPath);
-                    if (item != null) {
-                        if (snippet && item instanceof FileImpl) {
-                            ((FileImpl) item).setSnippet(entry.getValue());
-                        }
-                        results.add(item);
+        try {
+            List<Integer> ids = new ArrayList<>(searchResult.size());
+            for (String id : searchResult.keySet()) {
+                ids.add(Integer.parseInt(id));
+            }
+            // Paths of all hits are read with one query.
+            Map<Integer, HierarchyItemImpl> items = getDataAccess().getItems(ids);
+            for (Map.Entry<String, String> entry : searchResult.entrySet()) {
+                HierarchyItemImpl item = items.get(Integer.parseInt(entry.getKey()));
+                if (item != null && item.getPath().startsWith(getPath())) {
+                    if (snippet && item instanceof FileImpl) {
+                        ((FileImpl) item).setSnippet(entry.getValue());
                     }
+                    results.add(item);
                 }
-            } catch (Exception ex) {
-                getEngine().getLogger().logError("Error during search.", ex);
             }
+        } catch (Exception ex) {
+            getEngine().getLogger().logError("Error during search.", ex);
         }
         return new PageResults(results, (long) results.size());
     }
@@ -465,15 +566,8 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
      */
     @Override
     public long getAvailableBytes() {
-        try {
-            if (usedBytes == 0) {
-                usedBytes = getUsedBytes();
-            }
-            return getDataAccess().getTotalBytes() - usedBytes;
-        } catch (Exception e) {
-            getEngine().getLogger().logError(e.getMessage(), e);
-            return 0;
-        }
+        QuotaService quota = getEngine().getQuotaService();
+        return quota.getTotalBytes() - quota.getUsedBytes();
     }
 
     /**
@@ -489,19 +583,6 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
      */
     @Override
     public long getUsedBytes() {
-        BigDecimal bytes = BigDecimal.valueOf(0);
-        try {
-            if (usedBytes == 0 && getDataAccess().getDefaultTableSpace() != null) {
-                bytes = getDataAccess().executeScalar("SELECT sum(bytes) FROM dba_segments " +
-                        "where tablespace_name=? " +
-                        "GROUP BY tablespace_name", getDataAccess().getDefaultTableSpace());
-            } else {
-                return usedBytes;
-            }
-
-        } catch (Exception e) {
-            getEngine().getLogger().logError(e.getMessage(), e);
-        }
-        return bytes.longValue();
+        return getEngine().getQuotaService().getUsedBytes();
     }
 }
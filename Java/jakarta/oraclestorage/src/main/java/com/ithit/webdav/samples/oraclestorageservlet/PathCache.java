@@ -0,0 +1,90 @@
+package com.ithit.webdav.samples.oraclestorageservlet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the folder IDs by folder path, used to find items by path without walking
+ * the folder tree in the DB. Entries of the moved and deleted folders are removed together with their subtree.
+ * IDs are never reused by the DB, so a stale entry can only point to a deleted folder.
+ * Each invalidation starts a new generation. IDs read by a lookup that started in an earlier generation
+ * are not cached, because they may have been read before the change that caused the invalidation was committed.
+ */
+final class PathCache {
+
+    static final int DEFAULT_SIZE = 10000;
+    private final Map<String, Integer> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long generation;
+
+    /**
+     * Creates instance of {@link PathCache}.
+     *
+     * @param maxEntries Maximum number of folders to keep IDs for. Least recently used folders are evicted first.
+     */
+    PathCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns ID of the folder.
+     *
+     * @param path Decoded folder path without trailing slash, like /folder/subfolder.
+     * @return Folder ID or null if the folder is not cached.
+     */
+    synchronized Integer get(String path) {
+        Integer id = entries.get(path);
+        if (id != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return id;
+    }
+
+    /**
+     * Returns current generation of the cache. Must be read before the lookup of the IDs to cache.
+     *
+     * @return Generation passed to {@link #put(String, int, long)}.
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches ID of the folder unless the cache was invalidated since the lookup started.
+     *
+     * @param path       Decoded folder path without trailing slash.
+     * @param id         Folder ID.
+     * @param generation Generation returned by {@link #getGeneration()} before the lookup.
+     */
+    synchronized void put(String path, int id, long generation) {
+        if (generation == this.generation) {
+            entries.put(path, id);
+        }
+    }
+
+    /**
+     * Removes cached IDs of the folder and all folders in its subtree.
+     * Must be called when item is deleted or moved.
+     *
+     * @param path Decoded item path without trailing slash.
+     */
+    synchronized void invalidate(String path) {
+        generation++;
+        String prefix = path + "/";
+        entries.keySet().removeIf(x -> x.equals(path) || x.startsWith(prefix));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Path cache: " + entries.size() + " folders, " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+}
@@ -0,0 +1,153 @@
+package com.ithit.webdav.samples.oraclestorageservlet;
+
+import com.ithit.webdav.server.Logger;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide source of the quota figures of the default table space.
+ * Size and usage of the table space are read from the data dictionary on a schedule and after
+ * the configured amount of content is uploaded. Bytes uploaded since the last refresh are added
+ * to the used bytes, so quota requests never query the data dictionary.
+ */
+final class QuotaService {
+
+    private static final int DEFAULT_INTERVAL = 300;
+    private static final int DEFAULT_REFRESH_SIZE = 100;
+
+    private final ConnectionPool connectionPool;
+    private final Logger logger;
+    private final long refreshSize;
+    private final Timer timer = new Timer("Quota refresh", true);
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private String defaultTableSpace;
+    private volatile long totalBytes;
+    private volatile long usedBytes;
+
+    /**
+     * Creates instance of {@link QuotaService}, reads the quota figures and schedules their refresh.
+     *
+     * @param connectionPool Pool to take the connection for the refresh from.
+     * @param interval       Refresh interval in seconds.
+     * @param refreshSize    Amount of uploaded content in MB after which the figures are refreshed.
+     * @param logger         {@link Logger}.
+     */
+    QuotaService(ConnectionPool connectionPool, Integer interval, Integer refreshSize, Logger logger) {
+        this.connectionPool = connectionPool;
+        this.logger = logger;
+        this.refreshSize = (refreshSize == null || refreshSize <= 0 ? DEFAULT_REFRESH_SIZE : refreshSize) * 1024L * 1024;
+        long period = (interval == null || interval <= 0 ? DEFAULT_INTERVAL : interval) * 1000L;
+        // First refresh runs on the calling thread, where the data source can be looked up in JNDI.
+        refresh();
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, period, period);
+    }
+
+    /**
+     * Returns size of the default table space.
+     *
+     * @return Total bytes available to DB.
+     */
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns bytes used in the default table space, including the content uploaded since the last refresh.
+     *
+     * @return Used bytes.
+     */
+    long getUsedBytes() {
+        return usedBytes + bytesWritten.get();
+    }
+
+    /**
+     * Accounts the uploaded content. Schedules refresh of the figures if enough content was uploaded since the last refresh.
+     *
+     * @param bytes Number of uploaded bytes.
+     */
+    void bytesWritten(long bytes) {
+        if (bytes > 0 && bytesWritten.addAndGet(bytes) >= refreshSize && refreshPending.compareAndSet(false, true)) {
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, 0);
+        }
+    }
+
+    /**
+     * Stops the refresh of the figures.
+     */
+    void close() {
+        timer.cancel();
+    }
+
+    /**
+     * Reads size and usage of the default table space from the data dictionary.
+     */
+    private void refresh() {
+        refreshPending.set(false);
+        ConnectionPool.PooledConnection connection = null;
+        try {
+            connection = connectionPool.acquire();
+            if (defaultTableSpace == null) {
+                defaultTableSpace = queryString(connection, "SELECT DEFAULT_TABLESPACE FROM DBA_USERS WHERE USERNAME = (SELECT USER FROM dual)");
+            }
+            if (defaultTableSpace != null) {
+                long written = bytesWritten.get();
+                long total = queryLong(connection, "SELECT sum(bytes) FROM dba_data_files WHERE tablespace_name = ?");
+                long used = queryLong(connection, "SELECT sum(bytes) FROM dba_segments WHERE tablespace_name = ?");
+                totalBytes = total;
+                usedBytes = used;
+                // Content uploaded during the refresh is kept in the estimate until the next refresh.
+                bytesWritten.addAndGet(-written);
+                refreshes.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            logger.logError("Cannot read quota of the default table space.", e);
+        } finally {
+            if (connection != null) {
+                connectionPool.release(connection);
+            }
+        }
+    }
+
+    private String queryString(ConnectionPool.PooledConnection connection, String sql) throws SQLException {
+        synchronized (connection) {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        }
+    }
+
+    private long queryLong(ConnectionPool.PooledConnection connection, String sql) throws SQLException {
+        synchronized (connection) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, defaultTableSpace);
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next() ? result.getLong(1) : 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Quota: " + totalBytes + " bytes total, " + getUsedBytes() + " bytes used, " + refreshes.get() + " refreshes";
+    }
+}
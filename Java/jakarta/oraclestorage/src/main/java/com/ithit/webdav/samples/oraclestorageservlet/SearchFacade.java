@@ -235,6 +235,23 @@ class SearchFacade {
             }
         }
 
+        /**
+         * Deletes specified files information from the index.
+         *
+         * @param ids Ids of the files to delete from index.
+         */
+        void deleteIndex(List<Integer> ids) {
+            try {
+                Term[] terms = new Term[ids.size()];
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = new Term(ID, String.valueOf(ids.get(i)));
+                }
+                indexWriter.deleteDocuments(terms);
+            } catch (Throwable e) {
+                logger.logDebug("Cannot delete index for the files: " + ids);
+            }
+        }
+
         /**
          * Timer task implementation to commit index changes from time to time.
          */
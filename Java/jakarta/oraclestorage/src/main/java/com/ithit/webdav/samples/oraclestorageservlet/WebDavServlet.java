@@ -19,6 +19,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 
 /**
  * This servlet processes WEBDAV requests.
@@ -26,11 +27,17 @@ import java.nio.file.Paths;
 public class WebDavServlet extends HttpServletDav {
     private static String realPath;
     private static String servletContext;
+    private static int lobReadSize = BufferPool.BUFFER_SIZE;
+    private static long uploadCheckpointSize = 16L * 1024 * 1024;
+    private static long uploadCheckpointInterval = 10000;
     private Logger logger;
     private boolean showExceptions;
     private static final String DEFAULT_INDEX_PATH = "WEB-INF/Index";
     private String license;
     private SearchFacade searchFacade;
+    private ConnectionPool connectionPool;
+    private PathCache pathCache = new PathCache(PathCache.DEFAULT_SIZE);
+    private QuotaService quotaService;
     static final String START_TIME = "" + System.currentTimeMillis();
 
     /**
@@ -51,6 +58,33 @@ public class WebDavServlet extends HttpServletDav {
         return servletContext;
     }
 
+    /**
+     * Returns number of bytes requested from DB with each read of the file content.
+     *
+     * @return LOB read size in bytes.
+     */
+    static int getLobReadSize() {
+        return lobReadSize;
+    }
+
+    /**
+     * Returns number of uploaded bytes after which the file content is committed to DB.
+     *
+     * @return Checkpoint size in bytes.
+     */
+    static long getUploadCheckpointSize() {
+        return uploadCheckpointSize;
+    }
+
+    /**
+     * Returns time after which the uploaded file content is committed to DB.
+     *
+     * @return Checkpoint interval in milliseconds.
+     */
+    static long getUploadCheckpointInterval() {
+        return uploadCheckpointInterval;
+    }
+
     /**
      * Servlet initialization logic. Reads license file here. Creates instance of {@link com.ithit.webdav.server.Engine}.
      *
@@ -69,16 +103,34 @@ public class WebDavServlet extends HttpServletDav {
         realPath = servletConfig.getServletContext().getRealPath("");
         servletContext = servletConfig.getServletContext().getContextPath();
         logger = new HttpServletLoggerImpl(servletConfig.getServletContext());
+        // Oracle driver requires a locale that the DB supports.
+        Locale.setDefault(Locale.US);
+        connectionPool = new ConnectionPool(ConnectionPool.DATA_SOURCE,
+                parseInteger(servletConfig.getInitParameter("db-pool-size")),
+                parseInteger(servletConfig.getInitParameter("db-pool-timeout")));
+        Integer lobReadSizeKb = parseInteger(servletConfig.getInitParameter("lob-read-size"));
+        if (lobReadSizeKb != null && lobReadSizeKb > 0) {
+            lobReadSize = lobReadSizeKb * 1024;
+        }
+        Integer checkpointSizeMb = parseInteger(servletConfig.getInitParameter("upload-checkpoint-size"));
+        if (checkpointSizeMb != null && checkpointSizeMb > 0) {
+            uploadCheckpointSize = checkpointSizeMb * 1024L * 1024;
+        }
+        Integer checkpointInterval = parseInteger(servletConfig.getInitParameter("upload-checkpoint-interval"));
+        if (checkpointInterval != null && checkpointInterval > 0) {
+            uploadCheckpointInterval = checkpointInterval * 1000L;
+        }
+        Integer pathCacheSize = parseInteger(servletConfig.getInitParameter("path-cache-size"));
+        if (pathCacheSize != null) {
+            pathCache = new PathCache(pathCacheSize);
+        }
+        quotaService = new QuotaService(connectionPool,
+                parseInteger(servletConfig.getInitParameter("quota-refresh-interval")),
+                parseInteger(servletConfig.getInitParameter("quota-refresh-size")), logger);
         WebDavEngine engine = new WebDavEngine(logger, license);
-        DataAccess dataAccess = new DataAccess(engine);
+        DataAccess dataAccess = new DataAccess(engine, connectionPool, pathCache);
         String indexLocalPath = createIndexPath();
-        String indexInterval = servletConfig.getInitParameter("index-interval");
-        Integer interval = null;
-        if (indexInterval != null) {
-            try {
-                interval = Integer.valueOf(indexInterval);
-            } catch (NumberFormatException ignored) {}
-        }
+        Integer interval = parseInteger(servletConfig.getInitParameter("index-interval"));
         searchFacade = new SearchFacade(dataAccess, logger);
         searchFacade.indexRootFolder(indexLocalPath, interval);
         dataAccess.closeConnection();
@@ -90,6 +142,21 @@ public class WebDavServlet extends HttpServletDav {
     @Override
     public void destroy() {
         searchFacade.getIndexer().stop();
+        quotaService.close();
+        connectionPool.close();
+        logger.logDebug(connectionPool.toString());
+        logger.logDebug(quotaService.toString());
+        logger.logDebug(pathCache.toString());
+        logger.logDebug(BufferPool.getInstance().toString());
+    }
+
+    private static Integer parseInteger(String value) {
+        if (value != null) {
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException ignored) {}
+        }
+        return null;
     }
 
     /**
@@ -110,7 +177,8 @@ public class WebDavServlet extends HttpServletDav {
         handlerHead.setPreviousHandler(engine.registerMethodHandler("HEAD", handlerHead));
 
         engine.setSearchFacade(searchFacade);
-        DataAccess dataAccess = new DataAccess(engine);
+        engine.setQuotaService(quotaService);
+        DataAccess dataAccess = new DataAccess(engine, connectionPool, pathCache);
         try {
             engine.service(httpServletRequest, httpServletResponse);
             dataAccess.commit();
@@ -122,6 +190,11 @@ public class WebDavServlet extends HttpServletDav {
                     e.printStackTrace(new PrintStream(httpServletResponse.getOutputStream()));
             }
         } finally {
+            long waited = dataAccess.getConnectionWaitMillis();
+            if (waited > 0) {
+                logger.logDebug("Waited " + waited + " ms for DB connection: " + httpServletRequest.getMethod()
+                        + " " + httpServletRequest.getRequestURI());
+            }
             dataAccess.closeConnection();
         }
     }
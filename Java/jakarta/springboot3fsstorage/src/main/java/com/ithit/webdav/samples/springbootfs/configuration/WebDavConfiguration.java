@@ -3,6 +3,7 @@ package com.ithit.webdav.samples.springbootfs.configuration;
 import com.ithit.webdav.integration.extendedattributes.ExtendedAttributesExtension;
 import com.ithit.webdav.samples.springbootfs.common.ResourceReader;
 import com.ithit.webdav.samples.springbootfs.impl.CustomFolderGetHandler;
+import com.ithit.webdav.samples.springbootfs.impl.MetadataCache;
 import com.ithit.webdav.samples.springbootfs.impl.SearchFacade;
 import com.ithit.webdav.samples.springbootfs.impl.WebDavEngine;
 import com.ithit.webdav.integration.spring.websocket.HandshakeHeadersInterceptor;
@@ -107,9 +108,16 @@ public class WebDavConfiguration extends WebMvcConfigurationSupport implements W
             webDavEngine.setSearchFacade(searchFacade);
         }
         webDavEngine.setWebSocketServer(new WebSocketServer(socketHandler.getSessions()));
+        webDavEngine.setMetadataCache(metadataCache());
         return webDavEngine;
     }
 
+    @Bean
+    public MetadataCache metadataCache() {
+        int size = properties.getMetadataCacheSize();
+        return new MetadataCache(size > 0 ? size : MetadataCache.DEFAULT_SIZE);
+    }
+
     @Bean
     public String rootLocalPath() {
         return checkRootPath(properties.getRootFolder(), Paths.get(properties.getRootFolder()).normalize().toString());
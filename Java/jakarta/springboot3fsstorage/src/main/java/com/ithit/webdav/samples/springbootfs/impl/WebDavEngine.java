@@ -23,6 +23,7 @@ public class WebDavEngine extends Engine {
     private final boolean showExceptions;
     private final String rootContext;
     private SearchFacade searchFacade;
+    private MetadataCache metadataCache;
     private WebSocketServer webSocketServer;
 
     /**
@@ -121,6 +122,24 @@ public class WebDavEngine extends Engine {
         this.searchFacade = searchFacade;
     }
 
+    /**
+     * Returns process-wide cache of the items metadata stored in extended attributes.
+     *
+     * @return Metadata cache.
+     */
+    MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * Sets process-wide cache of the items metadata stored in extended attributes.
+     *
+     * @param metadataCache Metadata cache.
+     */
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     /**
      * Sets web socket server instance
      *
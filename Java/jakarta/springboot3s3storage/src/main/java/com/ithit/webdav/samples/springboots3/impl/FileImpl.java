@@ -15,6 +15,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -23,7 +24,6 @@ import java.util.Objects;
 public final class FileImpl extends HierarchyItemImpl implements File, Lock,
         ResumableUpload, UploadProgress {
 
-    private static final int BUFFER_SIZE = 1048576; // 1 Mb
     private final long contentLength;
 
     /**
@@ -74,6 +74,11 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock,
     @Override
     public void cancelUpload() throws LockedException, ServerException {
         ensureHasToken();
+        try {
+            getEngine().getDataClient().cancelUpload(getPath());
+        } catch (SdkException e) {
+            throw new ServerException(e);
+        }
     }
 
     /**
@@ -84,7 +89,12 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock,
      */
     @Override
     public long getBytesUploaded() throws ServerException {
-        return getContentLength();
+        try {
+            Long bytesUploaded = getEngine().getDataClient().getBytesUploaded(getPath());
+            return bytesUploaded != null ? bytesUploaded : getContentLength();
+        } catch (SdkException e) {
+            throw new ServerException(e);
+        }
     }
 
     /**
@@ -174,7 +184,7 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock,
      */
     @Override
     public void read(OutputStream out, long startIndex, long count) throws ServerException {
-        byte[] buf = new byte[BUFFER_SIZE];
+        byte[] buf = BufferPool.getInstance().acquire();
         int retVal;
         try (InputStream in = getEngine().getDataClient().getObject(getPath())) {
             in.skip(startIndex);
@@ -189,6 +199,8 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock,
             }
         } catch (IOException x) {
             throw new ServerException(x);
+        } finally {
+            BufferPool.getInstance().release(buf);
         }
     }
 
@@ -208,22 +220,25 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock,
     public long write(InputStream content, String contentType, long startIndex, long totalFileLength)
             throws LockedException, ServerException, IOException {
         ensureHasToken();
-        incrementSerialNumber();
-        getEngine().getDataClient().storeObject(getPath(), content, contentType, totalFileLength);
+        // Serial number is updated once per upload and stored with the new content,
+        // resumed requests continue the upload started with it.
+        Map<String, String> metadata = startIndex == 0 ? nextSerialNumber() : Collections.emptyMap();
+        long written = getEngine().getDataClient().storeObject(getPath(), content, contentType, startIndex, totalFileLength, metadata);
         getEngine().getWebSocketServer().notifyUpdated(getPath(), getWebSocketID());
-        return totalFileLength;
+        return written;
     }
 
-    private void incrementSerialNumber() {
+    private Map<String, String> nextSerialNumber() {
         try {
             Property serialNumber = Property.create("", "SerialNumber", "1");
             String sn = getSerialNumber();
             if (!Objects.equals(sn, "0")) {
                 serialNumber.setValue(String.valueOf((Integer.parseInt(sn) + 1)));
             }
-            getEngine().getDataClient().setMetadata(getPath(), "SerialNumber", SerializationUtils.serialize(Collections.singletonList(serialNumber)));
+            return Collections.singletonMap("SerialNumber", SerializationUtils.serialize(Collections.singletonList(serialNumber)));
         } catch (Exception ex) {
             getEngine().getLogger().logError("Cannot update serial number.", ex);
+            return Collections.emptyMap();
         }
     }
 
@@ -69,7 +69,7 @@ public final class FolderImpl extends HierarchyItemImpl implements Folder, Resum
         final HierarchyItem hierarchyItem = getEngine().getDataClient().locateObject(originalPath, getEngine());
         if (hierarchyItem == null) {
             try {
-                getEngine().getDataClient().storeObject(originalPath, null, null, 0);
+                getEngine().getDataClient().storeObject(originalPath, null, null, 0, 0);
                 getEngine().getWebSocketServer().notifyCreated(getPath() + getEngine().getDataClient().encode(name), getWebSocketID());
                 final long created = System.currentTimeMillis();
                 return FileImpl.getFile(originalPath, decodedName, created, created, 0, getEngine());
@@ -6,23 +6,26 @@ import com.ithit.webdav.samples.springboots3.impl.WebDavEngine;
 import com.ithit.webdav.server.HierarchyItem;
 import com.ithit.webdav.server.util.StringUtil;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 
 @Slf4j
-@AllArgsConstructor
 @Setter
 @Getter
 @FieldDefaults(level = AccessLevel.PRIVATE)
@@ -34,7 +37,43 @@ public class DataClient {
     S3Client s3Client;
     String bucket;
     String context;
+    final int partSize;
+    final int uploadConcurrency;
+    @Getter(AccessLevel.NONE)
+    final ExecutorService uploadExecutor;
+    @Getter(AccessLevel.NONE)
+    final Semaphore partBuffers;
+    @Getter(AccessLevel.NONE)
+    final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
     static final String FOLDER = "application/x-directory";
+    static final String UPLOADS = ".uploads/";
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int MAX_PART_SIZE = 1024 * 1024 * 1024;
+
+    /**
+     * Creates instance of {@link DataClient}.
+     * @param s3Client - Amazon S3 client.
+     * @param bucket - bucket name.
+     * @param context - WebDAV root context.
+     * @param partSize - size of the multipart upload parts in MB. Files up to this size are uploaded with a single request.
+     * @param uploadConcurrency - number of parts of one upload uploaded in parallel.
+     * @param uploadBuffers - number of parts buffered by all uploads. Memory used by uploads is bounded by
+     *                      {@code partSize * uploadBuffers}, uploads wait for a free buffer when all are in use.
+     */
+    public DataClient(S3Client s3Client, String bucket, String context, int partSize, int uploadConcurrency, int uploadBuffers) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.context = context;
+        this.partSize = (int) Math.min(Math.max(partSize * 1024L * 1024, MIN_PART_SIZE), MAX_PART_SIZE);
+        this.uploadConcurrency = Math.max(uploadConcurrency, 1);
+        this.partBuffers = new Semaphore(Math.max(uploadBuffers, 1));
+        // Each buffered part has its thread, so uploads do not queue for threads.
+        this.uploadExecutor = Executors.newFixedThreadPool(Math.max(uploadBuffers, 1), r -> {
+            Thread thread = new Thread(r, "S3 upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     /**
      * Locates object in S3 by original WebDAV path. Returns null if nothing is found.
@@ -80,6 +119,9 @@ public class DataClient {
         final ListObjectsV2Response response = s3Client.listObjectsV2(objectsV2Request);
         final ArrayList<HierarchyItem> items = new ArrayList<>();
         for (CommonPrefix commonPrefix: response.commonPrefixes()) {
+            if (commonPrefix.prefix().equals(UPLOADS)) {
+                continue;
+            }
             String name = StringUtil.trimEnd(commonPrefix.prefix().replace(key, ""), "/");
             items.add(FolderImpl.getFolder(context + commonPrefix.prefix(), name, 0, 0, engine));
         }
@@ -129,17 +171,9 @@ public class DataClient {
      */
     public void setMetadata(String originalPath, String metaKey, String metadata) {
         String key = getContext(originalPath);
-        String encodedUrl = encode(key);
         Map<String, String> md = loadExistingMetadata(key);
         updateMetadata(metaKey, metadata, md);
-        CopyObjectRequest copyReq = CopyObjectRequest.builder()
-                .copySource(encodedUrl)
-                .destinationBucket(bucket)
-                .destinationKey(key)
-                .metadata(md)
-                .metadataDirective(MetadataDirective.REPLACE)
-                .build();
-        s3Client.copyObject(copyReq);
+        replaceMetadata(key, md);
     }
 
     /**
@@ -147,20 +181,71 @@ public class DataClient {
      * @param originalPath WebDAV context path.
      * @param content InputStream of the object.
      * @param contentType object content type
-     * @param totalFileLength content length
+     * @param startIndex index in the object of the first byte in the content.
+     * @param totalFileLength content length or -1 if unknown.
+     * @return number of bytes of the content stored.
+     * @throws IOException if content cannot be read or upload cannot continue at the start index.
      */
-    public void storeObject(String originalPath, InputStream content, String contentType, long totalFileLength) {
+    public long storeObject(String originalPath, InputStream content, String contentType, long startIndex, long totalFileLength) throws IOException {
+        return storeObject(originalPath, content, contentType, startIndex, totalFileLength, Collections.emptyMap());
+    }
+
+    /**
+     * Stores or updates existing object at the specified key and updates its metadata with the content.
+     * Content larger than the part size is sent as multipart upload with parts uploaded in parallel.
+     * Multipart upload is left in S3 if the content ends before the total length, so the next request
+     * with the start index returned by {@link #getBytesUploaded(String)} continues the same upload.
+     * ID of the upload in progress is kept in a small object under {@link #UPLOADS} until the upload completes,
+     * so the stored object is not rewritten to track the upload.
+     * @param originalPath WebDAV context path.
+     * @param content InputStream of the object.
+     * @param contentType object content type
+     * @param startIndex index in the object of the first byte in the content.
+     * @param totalFileLength content length or -1 if unknown.
+     * @param metadata metadata values to set with the new content, null value removes the metadata.
+     *                 Ignored when the upload is continued, metadata is set when the upload starts.
+     * @return number of bytes of the content stored.
+     * @throws IOException if content cannot be read or upload cannot continue at the start index.
+     */
+    public long storeObject(String originalPath, InputStream content, String contentType, long startIndex, long totalFileLength,
+                            Map<String, String> metadata) throws IOException {
         String key = getContext(originalPath);
-        Map<String, String> metadata = loadExistingMetadata(key);
-        final PutObjectRequest request = PutObjectRequest.builder()
-                .bucket(bucket)
-                .key(key)
-                .contentLength(totalFileLength)
-                .contentType(contentType)
-                .metadata(metadata)
-                .build();
-        final RequestBody requestBody = content != null ? RequestBody.fromInputStream(content, totalFileLength) : RequestBody.empty();
-        s3Client.putObject(request, requestBody);
+        if (startIndex == 0 && (content == null || (totalFileLength >= 0 && totalFileLength <= partSize))) {
+            putObject(key, content, contentType, totalFileLength, metadata);
+            return content != null ? totalFileLength : 0;
+        }
+        return uploadParts(key, content, contentType, startIndex, totalFileLength, metadata);
+    }
+
+    /**
+     * Returns number of bytes stored by the multipart upload in progress.
+     * @param originalPath WebDAV context path.
+     * @return number of bytes or null if there is no upload in progress.
+     */
+    public Long getBytesUploaded(String originalPath) {
+        String key = getContext(originalPath);
+        String uploadId = loadUploadId(key);
+        if (uploadId == null) {
+            return null;
+        }
+        try {
+            return listParts(key, uploadId, new ArrayList<>());
+        } catch (NoSuchUploadException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Aborts multipart upload in progress and deletes its parts.
+     * @param originalPath WebDAV context path.
+     */
+    public void cancelUpload(String originalPath) {
+        String key = getContext(originalPath);
+        String uploadId = loadUploadId(key);
+        if (uploadId != null) {
+            abortUpload(key, uploadId);
+            deleteUploadId(key);
+        }
     }
 
     /**
@@ -168,16 +253,24 @@ public class DataClient {
      * @param originalPath WebDAV context path.
      */
     public void createFolder(String originalPath) {
-        storeObject(originalPath, null, FOLDER, 0);
+        putObject(getContext(originalPath), null, FOLDER, 0, Collections.emptyMap());
     }
 
     /**
-     * Deletes object by key.
+     * Stops threads uploading the parts.
+     */
+    public void close() {
+        uploadExecutor.shutdown();
+    }
+
+    /**
+     * Deletes object by key and aborts its multipart upload in progress.
      * @param originalPath WebDAV context path.
      */
     public void delete(String originalPath) {
         String key = getContext(originalPath);
         s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        cancelUpload(originalPath);
     }
 
     /**
@@ -216,6 +309,207 @@ public class DataClient {
         return path;
     }
 
+    private void putObject(String key, InputStream content, String contentType, long totalFileLength, Map<String, String> updates) {
+        Map<String, String> metadata = loadExistingMetadata(key);
+        updates.forEach((metaKey, value) -> updateMetadata(metaKey, value, metadata));
+        final PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentLength(totalFileLength)
+                .contentType(contentType)
+                .metadata(metadata)
+                .build();
+        final RequestBody requestBody = content != null ? RequestBody.fromInputStream(content, totalFileLength) : RequestBody.empty();
+        s3Client.putObject(request, requestBody);
+        if (!key.endsWith("/")) {
+            // Multipart upload in progress is superseded by this content.
+            String uploadId = loadUploadId(key);
+            if (uploadId != null) {
+                abortUpload(key, uploadId);
+                deleteUploadId(key);
+            }
+        }
+    }
+
+    private long uploadParts(String key, InputStream content, String contentType, long startIndex, long totalFileLength,
+                             Map<String, String> updates) throws IOException {
+        List<CompletedPart> parts = new ArrayList<>();
+        String uploadId = loadUploadId(key);
+        long position = 0;
+        if (startIndex > 0) {
+            try {
+                position = uploadId != null ? listParts(key, uploadId, parts) : -1;
+            } catch (NoSuchUploadException ex) {
+                position = -1;
+            }
+            if (position < 0) {
+                throw new IOException("Upload of " + key + " cannot continue at " + startIndex + ", no upload is in progress.");
+            }
+            if (startIndex > position) {
+                throw new IOException("Upload of " + key + " cannot continue at " + startIndex + ", " + position + " bytes are stored.");
+            }
+            // Skip the bytes sent again, parts that contain them are already stored.
+            IOUtils.skipFully(content, position - startIndex);
+        } else {
+            abortUpload(key, uploadId);
+            // Completed object gets metadata of the upload, existing object is not changed until then.
+            Map<String, String> metadata = loadExistingMetadata(key);
+            updates.forEach((metaKey, value) -> updateMetadata(metaKey, value, metadata));
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .metadata(metadata)
+                    .build()).uploadId();
+            storeUploadId(key, uploadId);
+        }
+        Semaphore inFlight = new Semaphore(uploadConcurrency);
+        Deque<Future<CompletedPart>> pending = new ArrayDeque<>();
+        boolean complete = false;
+        try {
+            while (!complete) {
+                inFlight.acquire();
+                byte[] buffer = null;
+                boolean submitted = false;
+                try {
+                    buffer = acquireBuffer();
+                    while (!pending.isEmpty() && pending.peek().isDone()) {
+                        parts.add(pending.poll().get());
+                    }
+                    int size = totalFileLength < 0 ? partSize : (int) Math.min(partSize, totalFileLength - position);
+                    int length = IOUtils.read(content, buffer, 0, size);
+                    complete = totalFileLength < 0 ? length < size : position + length == totalFileLength;
+                    // Tail of the interrupted request is too small to be a part, client sends it again.
+                    if ((!complete && length < MIN_PART_SIZE) || (length == 0 && parts.size() + pending.size() > 0)) {
+                        break;
+                    }
+                    pending.add(uploadPart(key, uploadId, parts.size() + pending.size() + 1, buffer, length, inFlight));
+                    submitted = true;
+                    position += length;
+                } finally {
+                    if (!submitted) {
+                        if (buffer != null) {
+                            releaseBuffer(buffer);
+                        }
+                        inFlight.release();
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                parts.add(pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload of " + key + " was interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pending.forEach(x -> x.cancel(false));
+        }
+        if (complete) {
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+            deleteUploadId(key);
+        }
+        return position - startIndex;
+    }
+
+    private Future<CompletedPart> uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length, Semaphore inFlight) {
+        return uploadExecutor.submit(() -> {
+            try {
+                UploadPartRequest request = UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .build();
+                String eTag = s3Client.uploadPart(request, RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length)).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } finally {
+                releaseBuffer(buffer);
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Returns part buffer shared by all uploads. Waits if all buffers are in use.
+     * Buffer must be returned with {@link #releaseBuffer(byte[])}.
+     */
+    private byte[] acquireBuffer() throws InterruptedException {
+        partBuffers.acquire();
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new byte[partSize];
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        partBuffers.release();
+    }
+
+    /**
+     * Lists stored parts of the multipart upload.
+     * @return number of bytes in the parts that follow each other from the first part.
+     */
+    private long listParts(String key, String uploadId, List<CompletedPart> parts) {
+        long length = 0;
+        ListPartsRequest request = ListPartsRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build();
+        for (Part part : s3Client.listPartsPaginator(request).parts()) {
+            if (part.partNumber() != parts.size() + 1) {
+                break;
+            }
+            parts.add(CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag()).build());
+            length += part.size();
+        }
+        return length;
+    }
+
+    private void abortUpload(String key, String uploadId) {
+        if (uploadId != null) {
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+            } catch (NoSuchUploadException ignored) {}
+        }
+    }
+
+    /**
+     * Returns ID of the multipart upload in progress or null if there is no upload.
+     */
+    private String loadUploadId(String key) {
+        try {
+            return s3Client.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(UPLOADS + key).build()).asUtf8String();
+        } catch (NoSuchKeyException ex) {
+            return null;
+        }
+    }
+
+    private void storeUploadId(String key, String uploadId) {
+        s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(UPLOADS + key).build(), RequestBody.fromString(uploadId));
+    }
+
+    private void deleteUploadId(String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(UPLOADS + key).build());
+    }
+
+    private void replaceMetadata(String key, Map<String, String> md) {
+        CopyObjectRequest copyReq = CopyObjectRequest.builder()
+                .copySource(encode(key))
+                .destinationBucket(bucket)
+                .destinationKey(key)
+                .metadata(md)
+                .metadataDirective(MetadataDirective.REPLACE)
+                .build();
+        s3Client.copyObject(copyReq);
+    }
+
     private Map<String, String> loadExistingMetadata(String key) {
         Map<String, String> md = new HashMap<>();
         try {
@@ -27,8 +27,6 @@ import java.util.Objects;
 final class FileImpl extends HierarchyItemImpl implements File, Lock,
         ResumableUpload, UploadProgress {
 
-    private static final int BUFFER_SIZE = 1048576; // 1 Mb
-
     private String snippet;
 
     private final OpenOption[] allowedOpenFileOptions;
@@ -224,7 +222,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
     @Override
     public void read(OutputStream out, long startIndex, long count) throws ServerException {
         Path fullPath = this.getFullPath();
-        byte[] buf = new byte[BUFFER_SIZE];
+        byte[] buf = BufferPool.getInstance().acquire();
         int retVal;
         try (InputStream in = Files.newInputStream(fullPath)) {
             in.skip(startIndex);
@@ -239,6 +237,8 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             }
         } catch (IOException x) {
             throw new ServerException(x);
+        } finally {
+            BufferPool.getInstance().release(buf);
         }
     }
 
@@ -268,7 +268,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         }
         writeTotalContentLength(totalFileLength);
         incrementSerialNumber();
-        byte[] inputBuffer = new byte[BUFFER_SIZE];
+        byte[] inputBuffer = BufferPool.getInstance().acquire();
         long totalWrittenBytes = startIndex;
         int readBytes;
         try {
@@ -287,6 +287,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
+            BufferPool.getInstance().release(inputBuffer);
             writer.close();
         }
         getEngine().getWebSocketServer().notifyUpdated(getPath(), getWebSocketID());
@@ -124,6 +124,7 @@ public class WebDavServlet extends HttpServletDav {
     @Override
     public void destroy() {
         searchFacade.getIndexer().stop();
+        logger.logDebug(BufferPool.getInstance().toString());
     }
 
     private void checkRootPath(String rootPath) {
@@ -188,6 +188,7 @@ public class DataAccess {
             long itemModified = rs.getTimestamp("Modified").getTime();
             long lastChunkSaved = rs.getTimestamp("LastChunkSaved").getTime();
             long totalContentLength = rs.getLong("TotalContentLength");
+            long contentLength = rs.getLong("ContentLength");
             boolean versionControlled = "Y".equals(rs.getString("VersionControlled"));
             boolean checkedOut = "Y".equals(rs.getString("CheckedOut"));
             boolean checkInDuringUnlock = "Y".equals(rs.getString("CheckinDuringUnlock"));
@@ -206,6 +207,7 @@ public class DataAccess {
                             itemModified,
                             lastChunkSaved,
                             totalContentLength,
+                            contentLength,
                             versionControlled,
                             checkedOut,
                             checkInDuringUnlock,
@@ -358,6 +360,7 @@ public class DataAccess {
                             " Modified, " +
                             " LastChunkSaved, " +
                             " TotalContentLength," +
+                            " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                             " VersionControlled," +
                             " CheckinDuringUnlock," +
                             " CheckedOut," +
@@ -395,6 +398,7 @@ public class DataAccess {
                     " Modified," +
                     " LastChunkSaved," +
                     " TotalContentLength, " +
+                    " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                     " VersionControlled," +
                     " CheckinDuringUnlock," +
                     " CheckedOut," +
@@ -529,6 +533,7 @@ public class DataAccess {
                     " Modified," +
                     " LastChunkSaved," +
                     " TotalContentLength, " +
+                    " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                     " VersionControlled," +
                     " CheckinDuringUnlock," +
                     " CheckedOut," +
@@ -559,6 +564,7 @@ public class DataAccess {
                     " Modified," +
                     " LastChunkSaved," +
                     " TotalContentLength, " +
+                    " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                     " VersionControlled," +
                     " CheckinDuringUnlock," +
                     " CheckedOut," +
@@ -32,27 +32,27 @@ final class DownloadUtil {
      * @throws SQLException In case of an error.
      */
     static void readBlob(Logger logger, OutputStream output, Blob blob, long startIndex, long count) throws SQLException, IOException {
-        if (blob != null) {
-            try (InputStream stream = blob.getBinaryStream()) {
-                int bufSize = 1048576; // 1Mb
-                byte[] buf = new byte[bufSize];
-                long retval;
-                stream.skip(startIndex);
-                while ((retval = stream.read(buf)) > 0) {
-                    try {
-                        if (retval > count) {
-                            retval = count;
-                        }
-                        output.write(buf, 0, (int) retval);
-                    } catch (IOException e) {
-                        logger.logDebug("Remote host closed connection");
-                        return;
-                    }
-
-                    startIndex += retval;
-                    count -= retval;
+        if (blob == null)
+            return;
+        count = Math.min(count, blob.length() - startIndex);
+        if (count <= 0)
+            return;
+        byte[] buf = BufferPool.getInstance().acquire();
+        int readSize = Math.min(buf.length, WebDavServlet.getLobReadSize());
+        // Only the requested range of the LOB is transferred from DB.
+        try (InputStream stream = blob.getBinaryStream(startIndex + 1, count)) {
+            int read;
+            while (count > 0 && (read = stream.read(buf, 0, (int) Math.min(readSize, count))) > 0) {
+                try {
+                    output.write(buf, 0, read);
+                } catch (IOException e) {
+                    logger.logDebug("Remote host closed connection");
+                    return;
                 }
+                count -= read;
             }
+        } finally {
+            BufferPool.getInstance().release(buf);
         }
     }
 }
@@ -15,6 +15,7 @@ import com.ithit.webdav.server.resumableupload.UploadProgress;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -34,6 +35,7 @@ public class FileImpl extends HierarchyItemImpl implements
 
     private final long lastChunkSaved;
     private final long totalContentLength;
+    private final long contentLength;
     private AutoVersion autoVersion;
     private boolean versionControlled;
     private boolean checkedOut;
@@ -52,6 +54,7 @@ public class FileImpl extends HierarchyItemImpl implements
      * @param modified              Modification time of the hierarchy item.
      * @param lastChunkSaved        Last byte saved.
      * @param totalContentLength    Length of the file.
+     * @param contentLength         Length of the content stored in DB, less than the length of the file while upload is in progress.
      * @param versionControlled     Whether file version controlled.
      * @param checkedOut            Determines whether item is in checked-in or checked-out state.
      * @param checkInDuringUnlock   Whether we need check in file during unlock.
@@ -61,7 +64,7 @@ public class FileImpl extends HierarchyItemImpl implements
      */
     FileImpl(int id, int parentId, String name,
              String path, long created, long modified, long lastChunkSaved,
-             long totalContentLength,
+             long totalContentLength, long contentLength,
              boolean versionControlled, boolean checkedOut,
              boolean checkInDuringUnlock, boolean checkInOnFileComplete,
              AutoVersion autoVersion, WebDavEngine engine) {
@@ -69,6 +72,7 @@ public class FileImpl extends HierarchyItemImpl implements
 
         this.lastChunkSaved = lastChunkSaved;
         this.totalContentLength = totalContentLength;
+        this.contentLength = contentLength;
         this.autoVersion = autoVersion;
         this.versionControlled = versionControlled;
         this.checkedOut = checkedOut;
@@ -142,7 +146,7 @@ public class FileImpl extends HierarchyItemImpl implements
                                                long created, long modified, WebDavEngine engine) {
 
         return new FileImpl(id, parentId, name, path, created, modified, lastChunkSaved,
-                totalContentLength, versionControlled, checkedOut, checkInDuringUnlock,
+                totalContentLength, contentLength, versionControlled, checkedOut, checkInDuringUnlock,
                 checkInOnFileComplete, autoVersion, engine);
     }
 
@@ -187,12 +191,7 @@ public class FileImpl extends HierarchyItemImpl implements
      * @throws ServerException In case of an error.
      */
     public long getContentLength() throws ServerException {
-        try {
-            Blob blob = getDbField("Content", null);
-            return blob == null ? 0 : blob.length();
-        } catch (SQLException ex) {
-            throw new ServerException(ex);
-        }
+        return contentLength;
     }
 
     @Override
@@ -319,13 +318,13 @@ public class FileImpl extends HierarchyItemImpl implements
 
             OutputStream os = null;
             long totalSaved = 0;
+            byte[] buf = BufferPool.getInstance().acquire();
             try {
                 int read;
                 long lastStartIndex = startIndex;
                 long lastUpdateTime = new Date().getTime();
-                int bufSize = 1048576; // 1Mb
+                int bufSize = buf.length;
                 final long updateInterval = 1000;
-                byte[] buf = new byte[bufSize];
                 Blob bb = getDataAccess().executeScalar(
                         "select content from Repository where id = ? for update", getId());
                 os = bb.setBinaryStream(startIndex + 1);
@@ -351,8 +350,13 @@ public class FileImpl extends HierarchyItemImpl implements
                 }
                 os.close();
                 os = null;
+                if (totalFileSize < 0) {
+                    // Length of the content is known only when the whole content is read.
+                    getDataAccess().executeUpdate("UPDATE Repository SET TotalContentLength = ? WHERE ID = ?", startIndex, getId());
+                }
                 getDataAccess().commit();
             } finally {
+                BufferPool.getInstance().release(buf);
                 if (os != null)
                     os.close();
             }
@@ -455,7 +459,8 @@ public class FileImpl extends HierarchyItemImpl implements
      * @throws ServerException in case of an error.
      */
     public long getBytesUploaded() throws ServerException {
-        return getContentLength();
+        BigDecimal length = getDataAccess().executeScalar("SELECT DBMS_LOB.GETLENGTH(Content) FROM Repository WHERE ID = ?", id);
+        return length == null ? 0 : length.longValue();
     }
 
     /**
@@ -648,7 +653,8 @@ public class FileImpl extends HierarchyItemImpl implements
             throw new ServerException(WebDavStatus.CONFLICT);
 
         getDataAccess().executeUpdate(
-                "UPDATE Repository SET Content = (SELECT Content FROM Version WHERE ID = ?) WHERE ID = ?",
+                "UPDATE Repository SET (Content, TotalContentLength) ="
+                        + " (SELECT Content, DBMS_LOB.GETLENGTH(Content) FROM Version WHERE ID = ?) WHERE ID = ?",
                 v.getVersionId(), getId());
 
         // Copy properties to this item
@@ -56,6 +56,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
                 " Modified," +
                 " LastChunkSaved," +
                 " TotalContentLength," +
+                " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                 " VersionControlled," +
                 " CheckinDuringUnlock," +
                 " CheckedOut," +
@@ -71,7 +72,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
                     order.append("ItemType").append(sortPropertyVal).append(", ");
 
                 else if ("quota-used-bytes".equals(sortPropertyName))
-                    order.append("TotalContentLength").append(sortPropertyVal).append(", ");
+                    order.append("DBMS_LOB.GETLENGTH(Content)").append(sortPropertyVal).append(", ");
 
                 else if ("getlastmodified".equals(sortPropertyName))
                     order.append("Modified").append(sortPropertyVal).append(", ");
@@ -194,7 +195,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
         if (itemType == ItemType.FILE) {
             long now = new Date().getTime();
             item = new FileImpl(newId, getId(), name, getPath() + name,
-                    now, now, now, 0, false, false, false, false, getEngine().getAutoVersionMode(), getEngine());
+                    now, now, now, 0, 0, false, false, false, false, getEngine().getAutoVersionMode(), getEngine());
         }
         return item;
 
@@ -228,6 +229,7 @@ public class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quo
                         " Modified," +
                         " LastChunkSaved," +
                         " TotalContentLength," +
+                        " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                         " VersionControlled," +
                         " CheckInDuringUnlock," +
                         " CreatorDisplayName," +
@@ -112,6 +112,7 @@ public abstract class HierarchyItemImpl implements com.ithit.webdav.server.Hiera
                         " ItemType, " +
                         " LastChunkSaved, " +
                         " TotalContentLength, " +
+                        " DBMS_LOB.GETLENGTH(Content) AS ContentLength," +
                         " VersionControlled," +
                         " CheckinDuringUnlock," +
                         " CheckedOut," +
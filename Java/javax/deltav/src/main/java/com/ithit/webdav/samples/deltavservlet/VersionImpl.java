@@ -15,6 +15,7 @@ import com.ithit.webdav.server.util.StringUtil;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -236,12 +237,8 @@ class VersionImpl implements Version, File {
      * @throws ServerException In case of an error.
      */
     public long getContentLength() throws ServerException {
-        try {
-            Blob blob = engine.getDataAccess().executeScalar("SELECT Content FROM Version WHERE ID = ?", versionId);
-            return blob == null ? 0 : blob.length();
-        } catch (SQLException ex) {
-            throw new ServerException(ex);
-        }
+        BigDecimal length = engine.getDataAccess().executeScalar("SELECT DBMS_LOB.GETLENGTH(Content) FROM Version WHERE ID = ?", versionId);
+        return length == null ? 0 : length.longValue();
     }
 
     /**
@@ -27,6 +27,7 @@ import java.nio.file.Paths;
 public class WebDavServlet extends HttpServletDav {
     private static String realPath;
     private static String servletContext;
+    private static int lobReadSize = BufferPool.BUFFER_SIZE;
     private Logger logger;
     private String license;
     private boolean showExceptions;
@@ -54,6 +55,15 @@ public class WebDavServlet extends HttpServletDav {
         return servletContext;
     }
 
+    /**
+     * Returns number of bytes requested from DB with each read of the file content.
+     *
+     * @return LOB read size in bytes.
+     */
+    static int getLobReadSize() {
+        return lobReadSize;
+    }
+
     /**
      * Servlet initialization logic. Reads license file here. Creates instance of {@link com.ithit.webdav.server.Engine}.
      *
@@ -80,6 +90,12 @@ public class WebDavServlet extends HttpServletDav {
         } catch (IOException e) {
             license = "";
         }
+        String lobReadSizeKb = servletConfig.getInitParameter("lob-read-size");
+        if (lobReadSizeKb != null) {
+            try {
+                lobReadSize = Math.max(1, Integer.parseInt(lobReadSizeKb)) * 1024;
+            } catch (NumberFormatException ignored) {}
+        }
         WebDavEngine engine = new WebDavEngine(logger, license);
         DataAccess dataAccess = new DataAccess(engine);
         String indexLocalPath = createIndexPath();
@@ -101,6 +117,7 @@ public class WebDavServlet extends HttpServletDav {
     @Override
     public void destroy() {
         searchFacade.getIndexer().stop();
+        logger.logDebug(BufferPool.getInstance().toString());
     }
 
     /**
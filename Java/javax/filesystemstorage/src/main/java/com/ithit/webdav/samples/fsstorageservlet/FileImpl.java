@@ -1,7 +1,6 @@
 package com.ithit.webdav.samples.fsstorageservlet;
 
 import com.ithit.webdav.integration.extendedattributes.ExtendedAttributesExtension;
-import com.ithit.webdav.integration.utils.SerializationUtils;
 import com.ithit.webdav.server.*;
 import com.ithit.webdav.server.exceptions.ConflictException;
 import com.ithit.webdav.server.exceptions.LockedException;
@@ -10,10 +9,13 @@ import com.ithit.webdav.server.exceptions.ServerException;
 import com.ithit.webdav.server.resumableupload.ResumableUpload;
 import com.ithit.webdav.server.resumableupload.UploadProgress;
 
+import javax.servlet.ServletRequest;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributeView;
@@ -28,7 +30,11 @@ import java.util.Objects;
 final class FileImpl extends HierarchyItemImpl implements File, Lock,
         ResumableUpload, UploadProgress {
 
-    private static final int BUFFER_SIZE = 1048576; // 1 Mb
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     private String snippet;
 
@@ -98,6 +104,21 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         return new FileImpl(name, path, created, modified, engine);
     }
 
+    /**
+     * Returns file that corresponds to path using already read file attributes.
+     *
+     * @param name       File name.
+     * @param path       Encoded path relative to WebDAV root.
+     * @param attributes Attributes of the file.
+     * @param engine     Instance of {@link WebDavEngine}
+     * @return File instance.
+     */
+    static FileImpl getFile(String name, String path, BasicFileAttributes attributes, WebDavEngine engine) {
+        long created = attributes.creationTime().toMillis();
+        long modified = attributes.lastModifiedTime().toMillis();
+        return new FileImpl(name, path, created, modified, engine);
+    }
+
     /**
      * Array of items that are being uploaded to this item subtree.
      *
@@ -233,18 +254,29 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
     @Override
     public void read(OutputStream out, long startIndex, long count) throws ServerException {
         Path fullPath = this.getFullPath();
-        byte[] buf = new byte[BUFFER_SIZE];
-        int retVal;
-        try (InputStream in = Files.newInputStream(fullPath)) {
-            in.skip(startIndex);
-            while ((retVal = in.read(buf)) > 0) {
-                // Strict servlet API doesn't allow to write more bytes then content length. So we do this trick.
-                if (retVal > count) {
-                    retVal = (int) count;
+        try (FileChannel in = FileChannel.open(fullPath, StandardOpenOption.READ)) {
+            // Strict servlet API doesn't allow to write more bytes then content length. So we stop exactly at count.
+            long end = Math.min(startIndex + count, in.size());
+            if (sendFile(fullPath, startIndex, end)) {
+                return;
+            }
+            // Content is read straight into the pooled buffer and written to the response with large writes.
+            byte[] buffer = BufferPool.getInstance().acquire();
+            try {
+                ByteBuffer target = ByteBuffer.wrap(buffer);
+                long position = startIndex;
+                while (position < end) {
+                    target.clear();
+                    target.limit((int) Math.min(buffer.length, end - position));
+                    int read = in.read(target, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    out.write(buffer, 0, read);
+                    position += read;
                 }
-                out.write(buf, 0, retVal);
-                startIndex += retVal;
-                count -= retVal;
+            } finally {
+                BufferPool.getInstance().release(buffer);
             }
         } catch (IOException x) {
             throw new ServerException(x);
@@ -252,6 +284,40 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
     }
     // readFileImpl >>>>
 
+    /**
+     * Passes the file range to the servlet container if it supports sending files without copying them
+     * through the application, like Tomcat with sendfile enabled on the connector. The container sends
+     * the range when the request is processed, so it is used only for GET with a single range. Parts of
+     * the multipart range response are written between the boundaries and are copied by {@link #read}.
+     *
+     * @param fullPath Path of the file.
+     * @param start    Zero-based byte offset of the first byte to send.
+     * @param end      Byte offset following the last byte to send.
+     * @return {@code true} if the container will send the range.
+     */
+    private boolean sendFile(Path fullPath, long start, long end) {
+        DavRequest request = DavContext.currentRequest();
+        if (request == null || end <= start || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return false;
+        }
+        String range = request.getHeader("Range");
+        if (range != null && range.indexOf(',') >= 0) {
+            return false;
+        }
+        Object originalRequest = request.getOriginalRequest();
+        if (!(originalRequest instanceof ServletRequest)) {
+            return false;
+        }
+        ServletRequest servletRequest = (ServletRequest) originalRequest;
+        if (!Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        servletRequest.setAttribute(SENDFILE_FILENAME, fullPath.toAbsolutePath().toString());
+        servletRequest.setAttribute(SENDFILE_START, start);
+        servletRequest.setAttribute(SENDFILE_END, end);
+        return true;
+    }
+
     /**
      * Saves the content of the file from the specified stream to the File System repository.
      *
@@ -278,7 +344,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             writer.position(startIndex);
         }
         incrementSerialNumber();
-        byte[] inputBuffer = new byte[BUFFER_SIZE];
+        byte[] inputBuffer = BufferPool.getInstance().acquire();
         long totalWrittenBytes = startIndex;
         int readBytes;
         try {
@@ -290,13 +356,14 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             }
 
             try {
-                getEngine().getSearchFacade().getIndexer().indexFile(getName(), decode(getPath()), null, this);
+                getEngine().getSearchFacade().getIndexQueue().indexFile(getName(), decode(getPath()), null, this);
             } catch (Exception ex){
                 getEngine().getLogger().logError("Errors during indexing.", ex);
             }
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
+            BufferPool.getInstance().release(inputBuffer);
             writer.close();
         }
         getEngine().getWebSocketServer().notifyUpdated(getPath(), getWebSocketID());
@@ -311,15 +378,14 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             if (!Objects.equals(sn, "0")) {
                 serialNumber.setValue(String.valueOf((Integer.parseInt(sn) + 1)));
             }
-            ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), "SerialNumber", SerializationUtils.serialize(Collections.singletonList(serialNumber)));
+            setAttributeList("SerialNumber", Collections.singletonList(serialNumber));
         } catch (Exception ex) {
             getEngine().getLogger().logError("Cannot update serial number.", ex);
         }
     }
 
     private String getSerialNumber() throws ServerException {
-        String serialJson = ExtendedAttributesExtension.getExtendedAttribute(getFullPath().toString(), "SerialNumber");
-        List<Property> properties = SerializationUtils.deserializeList(Property.class, serialJson);
+        List<Property> properties = getAttributeList("SerialNumber", Property.class);
         if (properties.size() == 1) {
             return properties.get(0).getXmlValueRaw();
         }
@@ -335,10 +401,12 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         } catch (IOException e) {
             getEngine().getLogger().logError("Tried to delete file in use.", e);
             throw new ServerException(e);
+        } finally {
+            WebDavServlet.getMetadataCache().invalidateTree(getFullPath());
         }
         getEngine().getWebSocketServer().notifyDeleted(getPath(), getWebSocketID());
         try {
-            getEngine().getSearchFacade().getIndexer().deleteIndex(this);
+            getEngine().getSearchFacade().getIndexQueue().deleteIndex(this);
         } catch (Exception ex) {
             getEngine().getLogger().logError("Errors during indexing.", ex);
         }
@@ -362,10 +430,11 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         if (ExtendedAttributesExtension.hasExtendedAttribute(newPath.toString(), activeLocksAttribute)) {
             ExtendedAttributesExtension.deleteExtendedAttribute(newPath.toString(), activeLocksAttribute);
         }
+        WebDavServlet.getMetadataCache().invalidateTree(newPath);
         try {
             String currentPath = folder.getPath() + encode(destName);
             getEngine().getWebSocketServer().notifyCreated(currentPath, getWebSocketID());
-            getEngine().getSearchFacade().getIndexer().indexFile(decode(destName), decode(currentPath), null, this);
+            getEngine().getSearchFacade().getIndexQueue().indexFile(decode(destName), decode(currentPath), null, this);
         } catch (Exception ex) {
             getEngine().getLogger().logError("Errors during indexing.", ex);
         }
@@ -385,18 +454,21 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             Files.move(getFullPath(), newPath, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             throw new ServerException(e);
+        } finally {
+            WebDavServlet.getMetadataCache().invalidateTree(getFullPath());
         }
         setName(destName);
         // Locks should not be copied, delete them
         if (ExtendedAttributesExtension.hasExtendedAttribute(newPath.toString(), activeLocksAttribute)) {
             ExtendedAttributesExtension.deleteExtendedAttribute(newPath.toString(), activeLocksAttribute);
         }
+        WebDavServlet.getMetadataCache().invalidateTree(newPath);
         this.newPath = newPath;
         incrementMetadataEtag();
         try {
             String currentPath = folder.getPath() + encode(destName);
             getEngine().getWebSocketServer().notifyMoved(getPath(), currentPath, getWebSocketID());
-            getEngine().getSearchFacade().getIndexer().indexFile(decode(destName), decode(currentPath), getPath(), this);
+            getEngine().getSearchFacade().getIndexQueue().indexFile(decode(destName), decode(currentPath), getPath(), this);
         } catch (Exception ex) {
             getEngine().getLogger().logError("Errors during indexing.", ex);
         }
@@ -3,6 +3,7 @@ package com.ithit.webdav.samples.fsstorageservlet;
 import com.ithit.webdav.server.File;
 import com.ithit.webdav.server.Folder;
 import com.ithit.webdav.server.HierarchyItem;
+import com.ithit.webdav.server.Logger;
 import com.ithit.webdav.server.Property;
 import com.ithit.webdav.server.exceptions.*;
 import com.ithit.webdav.server.paging.OrderProperty;
@@ -18,9 +19,7 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * Represents a folder in the File system repository.
@@ -75,6 +74,21 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
         return new FolderImpl(name, fixPath(path), created, modified, engine);
     }
 
+    /**
+     * Returns folder that corresponds to path using already read folder attributes.
+     *
+     * @param name       Folder name.
+     * @param path       Encoded path relative to WebDAV root.
+     * @param attributes Attributes of the folder.
+     * @param engine     Instance of {@link WebDavEngine}
+     * @return Folder instance.
+     */
+    static FolderImpl getFolder(String name, String path, BasicFileAttributes attributes, WebDavEngine engine) {
+        long created = attributes.creationTime().toMillis();
+        long modified = attributes.lastModifiedTime().toMillis();
+        return new FolderImpl(name, fixPath(path), created, modified, engine);
+    }
+
     private static String fixPath(String path) {
         if (!Objects.equals(path.substring(path.length() - 1), "/")) {
             path += "/";
@@ -160,18 +174,23 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
         Path fullFolderPath = Paths.get(getRootFolder() + decodedPath);
         List<HierarchyItemImpl> children = new ArrayList<>();
         Long total = null;
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(fullFolderPath)) {
-            List<Path> paths = StreamSupport.stream(ds.spliterator(), false).collect(Collectors.toList());
-            paths = sortChildren(paths, orderProps);
-            for (Path p : paths) {
-                String childPath = getPath() + encode(p.getFileName().toString());
-                HierarchyItemImpl item = (HierarchyItemImpl) getEngine().getHierarchyItem(childPath);
-                children.add(item);
-            }
+        try {
+            Map<Path, BasicFileAttributes> attributes = readChildrenAttributes(fullFolderPath, getEngine().getLogger());
+            List<Path> paths = new ArrayList<>(attributes.keySet());
             total = (long) paths.size();
+            int limit = paths.size();
+            if (offset != null && nResults != null && offset + nResults >= 0 && offset + nResults < limit)
+            {
+                limit = (int) (offset + nResults);
+            }
+            paths = sortChildren(paths, attributes, orderProps, limit);
             if (offset != null && nResults != null)
             {
-                children = children.stream().skip(offset).limit(nResults).collect(Collectors.toList());
+                paths = paths.stream().skip(offset).collect(Collectors.toList());
+            }
+            // Items are created only for the requested page.
+            for (Path p : paths) {
+                children.add(createChild(p.getFileName().toString(), attributes.get(p)));
             }
         } catch (IOException e) {
             getEngine().getLogger().logError(e.getMessage(), e);
@@ -180,6 +199,54 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
     }
     // getChildren >>>>
 
+    /**
+     * Reads attributes of all children of the folder in a single pass over the folder.
+     *
+     * @param folder Full path of the folder in the file system.
+     * @param logger {@link Logger} for children which attributes cannot be read.
+     * @return Map of children paths to their attributes in the folder listing order.
+     * @throws IOException in case the folder cannot be read.
+     */
+    static Map<Path, BasicFileAttributes> readChildrenAttributes(Path folder, Logger logger) throws IOException {
+        Map<Path, BasicFileAttributes> result = new LinkedHashMap<>();
+        Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // Link attributes are returned only if the link target does not exist.
+                if (!attrs.isSymbolicLink()) {
+                    result.put(file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (file.equals(folder)) {
+                    throw exc;
+                }
+                logger.logDebug("Cannot read attributes of: " + file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Creates child item of this folder from already read attributes.
+     *
+     * @param name       Child name.
+     * @param attributes Child attributes.
+     * @return {@link FileImpl} or {@link FolderImpl} instance.
+     * @throws ServerException in case of an error.
+     */
+    private HierarchyItemImpl createChild(String name, BasicFileAttributes attributes) throws ServerException {
+        String childPath = getPath() + encode(name);
+        if (attributes.isDirectory()) {
+            return FolderImpl.getFolder(name, childPath, attributes, getEngine());
+        }
+        return FileImpl.getFile(name, childPath, attributes, getEngine());
+    }
+
     // <<<< deleteFolderImpl
     @Override
     public void delete() throws LockedException, MultistatusException,
@@ -190,6 +257,8 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
             FileUtils.deleteDirectory(getFullPath().toFile());
         } catch (IOException e) {
             throw new ServerException(e);
+        } finally {
+            WebDavServlet.getMetadataCache().invalidateTree(getFullPath());
         }
         getEngine().getWebSocketServer().notifyDeleted(getPath(), getWebSocketID());
     }
@@ -212,6 +281,7 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
             Path sourcePath = this.getFullPath();
             Path destinationFullPath = Paths.get(destinationFolder, destName);
             FileUtils.copyDirectory(sourcePath.toFile(), destinationFullPath.toFile());
+            WebDavServlet.getMetadataCache().invalidateTree(destinationFullPath);
             addIndex(destinationFullPath, folder.getPath() + destName, destName);
         } catch (IOException e) {
             throw new ServerException(e);
@@ -233,62 +303,119 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
     }
 
     /**
-     * Sorts array of FileSystemInfo according to the specified order.
-     * @param paths Array of files and folders to sort.
+     * Sorts files and folders according to the specified order.
+     * @param paths Files and folders to sort.
+     * @param attributes Attributes of the files and folders.
      * @param orderProps Sorting order.
-     * @return Sorted list of files and folders.
+     * @param limit Number of first items needed.
+     * @return Sorted list of first {@code limit} files and folders.
      */
-    private List<Path> sortChildren(List<Path> paths, List<OrderProperty> orderProps) {
-        if (orderProps != null && !orderProps.isEmpty()) {
-            int index = 0;
-            Comparator<Path> comparator = null;
+    private static List<Path> sortChildren(List<Path> paths, Map<Path, BasicFileAttributes> attributes,
+                                           List<OrderProperty> orderProps, int limit) {
+        Map<String, Boolean> order = new LinkedHashMap<>();
+        if (orderProps != null) {
             for (OrderProperty orderProperty :
                     orderProps) {
-                Comparator<Path> tempComp = null;
-                if ("is-directory".equals(orderProperty.getProperty().getName())) {
-                    Function<Path, Boolean> sortFunc = item -> item.toFile().isDirectory();
-                    tempComp = Comparator.comparing(sortFunc);
-                }
-                if ("quota-used-bytes".equals(orderProperty.getProperty().getName())) {
-                    Function<Path, Long> sortFunc = item -> item.toFile().length();
-                    tempComp = Comparator.comparing(sortFunc);
-                }
-                if ("getlastmodified".equals(orderProperty.getProperty().getName())) {
-                    Function<Path, Long> sortFunc = item -> item.toFile().lastModified();
-                    tempComp = Comparator.comparing(sortFunc);
-                }
-                if ("displayname".equals(orderProperty.getProperty().getName())) {
-                    Function<Path, String> sortFunc = item -> item.getFileName().toString();
-                    tempComp = Comparator.comparing(sortFunc);
-                }
-                if ("getcontenttype".equals(orderProperty.getProperty().getName())) {
-                    Function<Path, String> sortFunc = item -> getExtension(item.getFileName().toString());
-                    tempComp = Comparator.comparing(sortFunc);
-                }
-                if (tempComp != null) {
-                    if (index++ == 0) {
-                        if (orderProperty.isAscending()) {
-                            comparator = tempComp;
-                        } else {
-                            comparator = tempComp.reversed();
-                        }
-                    } else {
-                        if (orderProperty.isAscending()) {
-                            comparator = comparator != null ? comparator.thenComparing(tempComp) : tempComp;
-                        } else {
-                            comparator = comparator != null ? comparator.thenComparing(tempComp.reversed()) : tempComp.reversed();
-                        }
-                    }
-                }
+                order.putIfAbsent(orderProperty.getProperty().getName(), orderProperty.isAscending());
             }
+        }
+        return sortChildren(paths, attributes, order, limit);
+    }
+
+    /**
+     * Sorts files and folders by the specified properties. Sort keys are taken once per entry from
+     * the already read attributes, so no file system calls are made while comparing. Entries are sorted
+     * as indices of their keys with a heap of primitive indices. If only first items are needed,
+     * they are selected without sorting the whole list.
+     * @param paths Files and folders to sort.
+     * @param attributes Attributes of the files and folders.
+     * @param order Names of the properties to sort by, mapped to {@code true} for ascending order.
+     * @param limit Number of first items needed.
+     * @return Sorted list of first {@code limit} files and folders.
+     */
+    static List<Path> sortChildren(List<Path> paths, Map<Path, BasicFileAttributes> attributes,
+                                   Map<String, Boolean> order, int limit) {
+        if (order.isEmpty()) {
+            return paths.subList(0, limit);
+        }
+        SortKeys keys = new SortKeys(paths, attributes);
+        List<IndexComparator> chain = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : order.entrySet()) {
+            IndexComparator comparator = keys.comparator(entry.getKey());
             if (comparator != null) {
-                paths = paths.stream().sorted(comparator).collect(Collectors.toList());
+                chain.add(entry.getValue() ? comparator : (x, y) -> comparator.compare(y, x));
+            }
+        }
+        if (chain.isEmpty()) {
+            return paths.subList(0, limit);
+        }
+        IndexComparator[] comparators = chain.toArray(new IndexComparator[0]);
+        // Equal items keep listing order.
+        IndexComparator comparator = (x, y) -> {
+            for (IndexComparator c : comparators) {
+                int result = c.compare(x, y);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(x, y);
+        };
+        List<Path> result = new ArrayList<>(limit);
+        for (int i : selectFirst(paths.size(), comparator, limit)) {
+            result.add(paths.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns indices of the first items in the specified order.
+     * Heap keeps the first items found so far with the last of them on top, then it is sorted in place.
+     * @param count Number of items.
+     * @param comparator Comparator of the item indices.
+     * @param limit Number of first items needed.
+     * @return Sorted indices of first {@code limit} items.
+     */
+    private static int[] selectFirst(int count, IndexComparator comparator, int limit) {
+        int size = Math.min(count, limit);
+        int[] heap = new int[size];
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i, size, comparator);
+        }
+        for (int i = size; i < count && size > 0; i++) {
+            if (comparator.compare(i, heap[0]) < 0) {
+                heap[0] = i;
+                siftDown(heap, 0, size, comparator);
+            }
+        }
+        for (int end = size - 1; end > 0; end--) {
+            int last = heap[0];
+            heap[0] = heap[end];
+            heap[end] = last;
+            siftDown(heap, 0, end, comparator);
+        }
+        return heap;
+    }
+
+    private static void siftDown(int[] heap, int index, int size, IndexComparator comparator) {
+        int item = heap[index];
+        int child;
+        while ((child = 2 * index + 1) < size) {
+            if (child + 1 < size && comparator.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (comparator.compare(heap[child], item) <= 0) {
+                break;
             }
+            heap[index] = heap[child];
+            index = child;
         }
-        return paths;
+        heap[index] = item;
     }
 
-    private String getExtension(String name) {
+    private static String getExtension(String name) {
         int periodIndex = name.lastIndexOf('.');
         return periodIndex == -1 ? "" : name.substring(periodIndex + 1);
 
@@ -308,6 +435,8 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
         try {
             removeIndex(getFullPath(), this);
             Files.move(sourcePath, destinationFullPath, StandardCopyOption.REPLACE_EXISTING);
+            WebDavServlet.getMetadataCache().invalidateTree(sourcePath);
+            WebDavServlet.getMetadataCache().invalidateTree(destinationFullPath);
             addIndex(destinationFullPath, folder.getPath() + destName, destName);
         } catch (IOException e) {
             throw new ServerException(e);
@@ -338,11 +467,14 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
             return new PageResults(results, (long) 0);
         }
         boolean snippet = propNames.stream().anyMatch(x -> SNIPPET.equalsIgnoreCase(x.getName()));
-        Map<String, String> searchResult;
+        long total = 0;
         try {
             String decodedPath = decode(getPath());
-            searchResult = searcher.search(searchString, options, decodedPath, snippet);
-            for (Map.Entry<String, String> entry : searchResult.entrySet()) {
+            SearchFacade.Searcher.SearchResult searchResult = searcher.search(searchString, options, decodedPath, snippet,
+                    offset, nResults);
+            total = searchResult.getTotal();
+            // Only items on the requested page are resolved.
+            for (Map.Entry<String, String> entry : searchResult.getHits().entrySet()) {
                 try {
                     HierarchyItem item = getEngine().getHierarchyItem(entry.getKey());
                     if (item != null) {
@@ -358,7 +490,7 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
         } catch (ServerException e) {
             getEngine().getLogger().logError("Error during search.", e);
         }
-        return new PageResults((offset != null && nResults != null) ? results.stream().skip(offset).limit(nResults).collect(Collectors.toList()) : results, (long) results.size());
+        return new PageResults(results, total);
     }
     // searchImpl >>>>
 
@@ -384,28 +516,78 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
     }
 
     private void removeIndex(Path sourcePath, FolderImpl itSelf) {
-        List<HierarchyItem> filesToDelete = new ArrayList<>();
-        getEngine().getSearchFacade().getFilesToIndex(sourcePath.toFile().listFiles(), filesToDelete, WebDavServlet.getRootLocalPath());
-        filesToDelete.add(itSelf);
-        for (HierarchyItem hi : filesToDelete) {
-            try {
-                getEngine().getSearchFacade().getIndexer().deleteIndex(hi);
-            } catch (Exception e) {
-                getEngine().getLogger().logError("Cannot delete index.", e);
-            }
+        SearchFacade searchFacade = getEngine().getSearchFacade();
+        try {
+            searchFacade.crawl(sourcePath, WebDavServlet.getRootLocalPath(),
+                    (name, path, attributes) -> searchFacade.getIndexQueue().deleteIndex(path));
+            searchFacade.getIndexQueue().deleteIndex(itSelf);
+        } catch (Exception e) {
+            getEngine().getLogger().logError("Cannot delete index.", e);
         }
     }
 
     private void addIndex(Path sourcePath, String path, String name) {
-        List<HierarchyItem> filesToIndex = new ArrayList<>();
-        getEngine().getSearchFacade().getFilesToIndex(sourcePath.toFile().listFiles(), filesToIndex, WebDavServlet.getRootLocalPath());
-        getEngine().getSearchFacade().getIndexer().indexFile(name, decode(path), null, null);
-        for (HierarchyItem hi : filesToIndex) {
-            try {
-                getEngine().getSearchFacade().getIndexer().indexFile(hi.getName(), decode(hi.getPath()), null, hi);
-            } catch (Exception e) {
-                getEngine().getLogger().logError("Cannot index.", e);
+        SearchFacade searchFacade = getEngine().getSearchFacade();
+        searchFacade.getIndexQueue().indexFile(name, decode(path), null, null);
+        try {
+            searchFacade.crawl(sourcePath, WebDavServlet.getRootLocalPath(), (childName, childPath, attributes) ->
+                    searchFacade.getIndexQueue().indexFile(childName, childPath, null, !attributes.isDirectory()));
+        } catch (Exception e) {
+            getEngine().getLogger().logError("Cannot index.", e);
+        }
+    }
+
+    /**
+     * Sort keys of folder children taken once from their attributes.
+     */
+    private static final class SortKeys {
+        private final boolean[] directory;
+        private final long[] size;
+        private final long[] modified;
+        private final String[] name;
+        private final String[] extension;
+
+        private SortKeys(List<Path> paths, Map<Path, BasicFileAttributes> attributes) {
+            int count = paths.size();
+            directory = new boolean[count];
+            size = new long[count];
+            modified = new long[count];
+            name = new String[count];
+            extension = new String[count];
+            for (int i = 0; i < count; i++) {
+                Path path = paths.get(i);
+                BasicFileAttributes attrs = attributes.get(path);
+                directory[i] = attrs.isDirectory();
+                size[i] = attrs.size();
+                modified[i] = attrs.lastModifiedTime().toMillis();
+                name[i] = path.getFileName().toString();
+                extension[i] = getExtension(name[i]);
+            }
+        }
+
+        private IndexComparator comparator(String property) {
+            switch (property) {
+                case "is-directory":
+                    return (x, y) -> Boolean.compare(directory[x], directory[y]);
+                case "quota-used-bytes":
+                    return (x, y) -> Long.compare(size[x], size[y]);
+                case "getlastmodified":
+                    return (x, y) -> Long.compare(modified[x], modified[y]);
+                case "displayname":
+                    return (x, y) -> name[x].compareTo(name[y]);
+                case "getcontenttype":
+                    return (x, y) -> extension[x].compareTo(extension[y]);
+                default:
+                    return null;
             }
         }
     }
+
+    /**
+     * Compares items by their indices without boxing them.
+     */
+    @FunctionalInterface
+    private interface IndexComparator {
+        int compare(int x, int y);
+    }
 }
@@ -243,20 +243,59 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
 
     private List<Property> getProperties() throws ServerException {
         if (properties == null) {
-            String propertiesJson = ExtendedAttributesExtension.getExtendedAttribute(getFullPath().toString(), PROPERTIES_ATTRIBUTE);
-            properties = SerializationUtils.deserializeList(Property.class, propertiesJson);
+            properties = getAttributeList(PROPERTIES_ATTRIBUTE, Property.class);
         }
         return properties;
     }
 
+    /**
+     * Returns list stored in the extended attribute of this item. Served from {@link MetadataCache} if possible.
+     *
+     * @param attribute Extended attribute name.
+     * @param type      Type of the list elements.
+     * @return List of attribute values or empty list if attribute is not set.
+     * @throws ServerException in case of reading exception.
+     */
+    <T> List<T> getAttributeList(String attribute, Class<T> type) throws ServerException {
+        return WebDavServlet.getMetadataCache().getList(getFullPath(), modified, attribute, type);
+    }
+
+    /**
+     * Serializes list to the extended attribute of this item and invalidates cached value.
+     *
+     * @param attribute Extended attribute name.
+     * @param value     List to store.
+     * @throws ServerException in case of writing exception.
+     */
+    void setAttributeList(String attribute, List<?> value) throws ServerException {
+        try {
+            ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), attribute, SerializationUtils.serialize(value));
+        } finally {
+            WebDavServlet.getMetadataCache().invalidate(getFullPath(), attribute);
+        }
+    }
+
+    /**
+     * Deletes extended attribute of this item and invalidates cached value.
+     *
+     * @param attribute Extended attribute name.
+     * @throws ServerException in case of writing exception.
+     */
+    void deleteAttribute(String attribute) throws ServerException {
+        try {
+            ExtendedAttributesExtension.deleteExtendedAttribute(getFullPath().toString(), attribute);
+        } finally {
+            WebDavServlet.getMetadataCache().invalidate(getFullPath(), attribute);
+        }
+    }
+
     /**
      * Returns Metadata ETag stored in extended attributes.
      * @return Metadata ETag.
      * @throws ServerException in case of reading exception.
      */
     private String getMetadataEtag() throws ServerException {
-        String serialJson = ExtendedAttributesExtension.getExtendedAttribute(getFullPath().toString(), METADATA_ETAG);
-        List<Property> metadataProperties = SerializationUtils.deserializeList(Property.class, serialJson);
+        List<Property> metadataProperties = getAttributeList(METADATA_ETAG, Property.class);
         if (metadataProperties.size() == 1) {
             return metadataProperties.get(0).getXmlValueRaw();
         }
@@ -273,7 +312,7 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
             if (!Objects.equals(sn, "0")) {
                 metadataEtag.setValue(String.valueOf((Integer.parseInt(sn) + 1)));
             }
-            ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), METADATA_ETAG, SerializationUtils.serialize(Collections.singletonList(metadataEtag)));
+            setAttributeList(METADATA_ETAG, Collections.singletonList(metadataEtag));
         } catch (Exception ex) {
             getEngine().getLogger().logError("Cannot update metadata etag.", ex);
         }
@@ -288,11 +327,7 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
     // <<<< getPropertyNamesImpl
     @Override
     public List<Property> getPropertyNames() throws ServerException {
-        if (ExtendedAttributesExtension.hasExtendedAttribute(getFullPath().toString(), PROPERTIES_ATTRIBUTE)) {
-            String propJson = ExtendedAttributesExtension.getExtendedAttribute(getFullPath().toString(), PROPERTIES_ATTRIBUTE);
-            return SerializationUtils.deserializeList(Property.class, propJson);
-        }
-        return new LinkedList<>();
+        return getAttributeList(PROPERTIES_ATTRIBUTE, Property.class);
     }
     // getPropertyNamesImpl >>>>
 
@@ -365,7 +400,7 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         properties = properties.stream()
                 .filter(e -> !propNamesToDel.contains(e.getName()))
                 .collect(Collectors.toList());
-        ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), PROPERTIES_ATTRIBUTE, SerializationUtils.serialize(properties));
+        setAttributeList(PROPERTIES_ATTRIBUTE, properties);
         incrementMetadataEtag();
         getEngine().getWebSocketServer().notifyUpdated(getPath(), getWebSocketID());
     }
@@ -455,7 +490,7 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         long expires = System.currentTimeMillis() + timeout * 1000;
         LockInfo lockInfo = new LockInfo(shared, deep, token, expires, owner);
         activeLocks.add(lockInfo);
-        ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), activeLocksAttribute, SerializationUtils.serialize(activeLocks));
+        setAttributeList(activeLocksAttribute, activeLocks);
         incrementMetadataEtag();
         getEngine().getWebSocketServer().notifyLocked(getPath(), getWebSocketID());
         return new LockResult(token, timeout);
@@ -483,12 +518,7 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
     // <<<< getActiveLocksImpl
     @Override
     public List<LockInfo> getActiveLocks() throws ServerException {
-        if (activeLocks == null) {
-            String activeLocksJson = ExtendedAttributesExtension.getExtendedAttribute(getFullPath().toString(), activeLocksAttribute);
-            activeLocks = new ArrayList<>(SerializationUtils.deserializeList(LockInfo.class, activeLocksJson));
-        } else {
-            activeLocks = new LinkedList<>();
-        }
+        activeLocks = getAttributeList(activeLocksAttribute, LockInfo.class);
         return activeLocks.stream()
                 .filter(x -> System.currentTimeMillis() < x.getTimeout())
                 .map(lock -> new LockInfo(
@@ -517,9 +547,9 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         if (lock != null) {
             activeLocks.remove(lock);
             if (!activeLocks.isEmpty()) {
-                ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), activeLocksAttribute, SerializationUtils.serialize(activeLocks));
+                setAttributeList(activeLocksAttribute, activeLocks);
             } else {
-                ExtendedAttributesExtension.deleteExtendedAttribute(getFullPath().toString(), activeLocksAttribute);
+                deleteAttribute(activeLocksAttribute);
             }
             incrementMetadataEtag();
             getEngine().getWebSocketServer().notifyUnlocked(getPath(), getWebSocketID());
@@ -554,7 +584,7 @@ abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         }
         long expires = System.currentTimeMillis() + timeout * 1000;
         lockInfo.setTimeout(expires);
-        ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), activeLocksAttribute, SerializationUtils.serialize(activeLocks));
+        setAttributeList(activeLocksAttribute, activeLocks);
         incrementMetadataEtag();
         getEngine().getWebSocketServer().notifyLocked(getPath(), getWebSocketID());
         return new RefreshLockResult(lockInfo.isShared(), lockInfo.isDeep(),
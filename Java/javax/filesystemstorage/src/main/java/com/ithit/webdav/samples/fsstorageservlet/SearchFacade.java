@@ -2,14 +2,15 @@ package com.ithit.webdav.samples.fsstorageservlet;
 
 import com.ithit.webdav.server.HierarchyItem;
 import com.ithit.webdav.server.Logger;
+import com.ithit.webdav.server.exceptions.ServerException;
 import com.ithit.webdav.server.search.SearchOptions;
 import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.path.PathHierarchyTokenizer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.document.TextField;
+import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
@@ -17,19 +18,22 @@ import org.apache.lucene.search.*;
 import org.apache.lucene.search.highlight.*;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.tika.Tika;
 import org.apache.tika.exception.ZeroByteFileException;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.StringReader;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.ithit.webdav.samples.fsstorageservlet.SearchFacade.Indexer.MAX_CONTENT_LENGTH;
 
@@ -38,13 +42,20 @@ import static com.ithit.webdav.samples.fsstorageservlet.SearchFacade.Indexer.MAX
  */
 class SearchFacade {
     protected static final StandardAnalyzer ANALYZER = new StandardAnalyzer();
+    private static final int DEFAULT_THREADS = 4;
+    private static final long CLOSE_TIMEOUT = 30 * 1000;
     private Indexer indexer;
+    private IndexQueue indexQueue;
     private Searcher searcher;
-    private final WebDavEngine engine;
+    private ForkJoinPool indexPool;
+    private ContentExtractor extractor;
+    private WriterSettings writerSettings;
+    private Indexer.CommitTask commitTask;
+    private Indexer.MergeTask mergeTask;
+    private final IndexMetrics indexMetrics = new IndexMetrics();
     private final Logger logger;
 
-    SearchFacade(WebDavEngine webDavEngine, Logger logger) {
-        engine = webDavEngine;
+    SearchFacade(Logger logger) {
         this.logger = logger;
     }
 
@@ -57,6 +68,24 @@ class SearchFacade {
         return indexer;
     }
 
+    /**
+     * Returns queue that indexes changed files in background.
+     *
+     * @return IndexQueue instance
+     */
+    IndexQueue getIndexQueue() {
+        return indexQueue;
+    }
+
+    /**
+     * Returns statistics of the storage indexing.
+     *
+     * @return IndexMetrics instance
+     */
+    IndexMetrics getIndexMetrics() {
+        return indexMetrics;
+    }
+
     /**
      * Returns Searcher instance
      *
@@ -76,18 +105,30 @@ class SearchFacade {
         private final String dataFolder;
         private final String indexFolder;
         private final Integer interval;
+        private final Integer refreshInterval;
+        private final Integer workers;
+        private final Integer queueSize;
+        private static final int SUBMIT_SIZE = 1000;
+        private List<FileEntry> batch = new ArrayList<>(SUBMIT_SIZE);
 
         /**
          * Build initial index of root folder.
          *
-         * @param dataFolder  Root folder.
-         * @param indexFolder Index folder.
-         * @param interval    Daemon commit interval.
+         * @param dataFolder      Root folder.
+         * @param indexFolder     Index folder.
+         * @param interval        Daemon commit interval.
+         * @param refreshInterval Interval of refreshing searcher with index changes.
+         * @param workers         Number of background indexing threads.
+         * @param queueSize       Maximum number of files waiting for background indexing.
          */
-        IndexTask(String dataFolder, String indexFolder, Integer interval) {
+        IndexTask(String dataFolder, String indexFolder, Integer interval, Integer refreshInterval,
+                  Integer workers, Integer queueSize) {
             this.dataFolder = dataFolder;
             this.indexFolder = indexFolder;
             this.interval = interval;
+            this.refreshInterval = refreshInterval;
+            this.workers = workers;
+            this.queueSize = queueSize;
         }
 
         /**
@@ -95,28 +136,80 @@ class SearchFacade {
          */
         @Override
         public void run() {
-            ForkJoinPool forkJoinPool = new ForkJoinPool(4);
             Directory fsDir;
             try {
-                List<HierarchyItem> filesToIndex = new ArrayList<>();
-                File data = new File(dataFolder);
-                searcher = new Searcher(indexFolder, ANALYZER, logger);
-                getFilesToIndex(data.listFiles(), filesToIndex, dataFolder);
                 fsDir = FSDirectory.open(Paths.get(indexFolder));
-                IndexWriterConfig conf = new IndexWriterConfig(ANALYZER);
+                IndexWriterConfig conf = writerSettings.createConfig(ANALYZER);
                 conf.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
                 IndexWriter indexWriter = new IndexWriter(fsDir, conf);
-                Tika tika = new Tika();
-                tika.setMaxStringLength(MAX_CONTENT_LENGTH);
-                indexer = new Indexer(indexWriter, filesToIndex, logger, tika, dataFolder);
-                forkJoinPool.execute(indexer);
+                searcher = new Searcher(indexWriter, ANALYZER, logger);
+                searcher.scheduleRefresh(refreshInterval);
+                indexer = new Indexer(indexWriter, Collections.emptyList(), logger, extractor, dataFolder);
+                indexQueue = new IndexQueue(indexer, logger, workers, queueSize);
+                // Only files added or changed since the last run are indexed. Files are parsed in batches
+                // while the storage is crawled, number of batches waiting for parsing is limited.
+                IndexManifest manifest = IndexManifest.load(indexWriter, logger);
+                int maxBatches = indexPool.getParallelism() * 2;
+                Semaphore batches = new Semaphore(maxBatches);
+                crawl(Paths.get(dataFolder), dataFolder, (name, path, attributes) -> {
+                    if (manifest.isChanged(path, attributes.lastModifiedTime().toMillis(), attributes.size())) {
+                        batch.add(new FileEntry(name, path, !attributes.isDirectory()));
+                        if (batch.size() == SUBMIT_SIZE) {
+                            submit(batches, indexWriter);
+                        }
+                    }
+                });
+                submit(batches, indexWriter);
+                Set<String> removed = manifest.getRemaining();
+                logger.logDebug("Storage crawled, removing " + removed.size() + " deleted files from index.");
+                for (String path : removed) {
+                    indexer.deleteIndex(path);
+                }
+                // Wait until all submitted batches are indexed before the initial commit.
+                batches.acquireUninterruptibly(maxBatches);
+                batches.release(maxBatches);
+                logger.logDebug(indexMetrics.toString());
+                logger.logDebug(extractor.toString());
                 indexWriter.commit();
-                new Indexer.CommitTask(indexWriter, logger).schedule(interval);
+                commitTask = new Indexer.CommitTask(indexWriter, logger);
+                commitTask.schedule(interval);
+                if (writerSettings.getMergeHour() >= 0) {
+                    mergeTask = new Indexer.MergeTask(indexWriter, logger);
+                    mergeTask.schedule(writerSettings.getMergeHour());
+                }
             } catch (Throwable e) {
                 logger.logError("Cannot initialize Lucene", e);
             }
         }
 
+        // Passes collected files to the pool, waits if too many batches are not parsed yet.
+        private void submit(Semaphore batches, IndexWriter indexWriter) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Indexer task = new Indexer(indexWriter, batch, logger, extractor, dataFolder);
+            int size = batch.size();
+            batch = new ArrayList<>(SUBMIT_SIZE);
+            batches.acquireUninterruptibly();
+            try {
+                indexPool.execute(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        task.invoke();
+                    } finally {
+                        long nanos = System.nanoTime() - start;
+                        indexMetrics.addBatch(size, nanos);
+                        batches.release();
+                        logger.logDebug("Indexed batch of " + size + " files in " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                                + " ms, " + indexMetrics.getFiles() + " files indexed.");
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                batches.release();
+                throw e;
+            }
+        }
+
         void schedule() {
             Timer timer = new Timer(true);
             timer.schedule(this, 0);
@@ -128,112 +221,246 @@ class SearchFacade {
      *
      * @param dataFolder  Root folder.
      * @param indexFolder Index folder.
-     * @param interval    Daemon commit interval.
+     * @param interval        Daemon commit interval.
+     * @param refreshInterval Interval of refreshing searcher with index changes.
+     * @param threads         Number of threads parsing files while the storage is crawled.
+     * @param workers         Number of background indexing threads.
+     * @param queueSize       Maximum number of files waiting for background indexing.
+     * @param extractor       Extractor of the file content shared by all indexing threads.
+     * @param writerSettings  Settings of the index writer.
      */
-    void indexRootFolder(String dataFolder, String indexFolder, Integer interval) {
-        new IndexTask(dataFolder, indexFolder, interval).schedule();
+    void indexRootFolder(String dataFolder, String indexFolder, Integer interval, Integer refreshInterval,
+                         Integer threads, Integer workers, Integer queueSize, ContentExtractor extractor,
+                         WriterSettings writerSettings) {
+        this.extractor = extractor;
+        this.writerSettings = writerSettings;
+        indexPool = new ForkJoinPool(threads == null || threads <= 0 ? DEFAULT_THREADS : threads);
+        new IndexTask(dataFolder, indexFolder, interval, refreshInterval, workers, queueSize).schedule();
     }
 
     /**
-     * Builds list of the all files (including files in child folders) in the data folder.
+     * Waits until queued files are indexed, stops indexing threads and releases index resources.
+     */
+    void close() {
+        if (indexQueue != null) {
+            indexQueue.drain();
+        }
+        if (indexPool != null) {
+            indexPool.shutdown();
+            try {
+                if (!indexPool.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    logger.logDebug("Indexing was not completed before shutdown.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (extractor != null) {
+            extractor.close();
+            logger.logDebug(extractor.toString());
+        }
+        if (commitTask != null) {
+            commitTask.cancel();
+        }
+        if (mergeTask != null) {
+            mergeTask.cancel();
+        }
+        if (searcher != null) {
+            searcher.close();
+        }
+        if (indexer != null) {
+            indexer.stop();
+        }
+        logger.logDebug(indexMetrics.toString());
+    }
+
+    /**
+     * Walks all files and folders in the folder tree, except hidden and not readable ones, and passes
+     * each of them to the consumer as soon as it is found. The folder itself is not passed.
      *
-     * @param files      List of files in root folder.
-     * @param result     List to be populated with results.
+     * @param folder     Full path of the folder in the file system.
      * @param dataFolder Root folder absolute location.
+     * @param consumer   Consumer of the found files and folders.
+     * @throws IOException in case the folder cannot be read.
      */
-    void getFilesToIndex(File[] files, List<HierarchyItem> result, String dataFolder) {
-        for (File f : files) {
-            if (f.isDirectory() && f.canRead() && !f.isHidden()) {
-                addFileToTheList(result, dataFolder, f);
-                getFilesToIndex(f.listFiles(), result, dataFolder);
-            } else {
-                if (f.canRead() && !f.isHidden()) {
-                    addFileToTheList(result, dataFolder, f);
+    void crawl(Path folder, String dataFolder, CrawlConsumer consumer) throws IOException {
+        Path start = folder.toAbsolutePath().normalize();
+        Path root = Paths.get(dataFolder).toAbsolutePath().normalize();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(start)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!isIndexable(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
                 }
+                consumer.accept(dir.getFileName().toString(), toRelativePath(root, dir, true), attrs);
+                return FileVisitResult.CONTINUE;
             }
-        }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (isIndexable(file)) {
+                    consumer.accept(file.getFileName().toString(), toRelativePath(root, file, false), attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                logger.logDebug("Cannot add file to the list: " + file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
     }
 
-    private void addFileToTheList(List<HierarchyItem> result, String dataFolder, File f) {
-        String quote = Pattern.quote(dataFolder);
+    private static boolean isIndexable(Path path) {
         try {
-            String context = f.getAbsolutePath().replaceAll("(?i)" + quote, "");
-            context = context.replace("\\", "/");
-            if (f.isDirectory()) {
-                context += "/";
-            }
-            result.add(engine.getHierarchyItem(context));
-        } catch (Throwable e) {
-            logger.logDebug("Cannot add file to the list: " + f.getAbsolutePath());
+            return Files.isReadable(path) && !Files.isHidden(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Builds path relative to the root folder in the form it is indexed, like /folder/file.txt or /folder/.
+    private static String toRelativePath(Path root, Path path, boolean directory) {
+        StringBuilder result = new StringBuilder();
+        for (Path name : root.relativize(path)) {
+            result.append('/').append(name);
+        }
+        if (directory) {
+            result.append('/');
         }
+        return result.toString();
     }
 
+    /**
+     * Receives files and folders found by {@link #crawl(Path, String, CrawlConsumer)}.
+     */
+    @FunctionalInterface
+    interface CrawlConsumer {
+
+        /**
+         * Accepts found file or folder.
+         *
+         * @param name       Name of the file or folder.
+         * @param path       Path relative to the root folder, folder path ends with /.
+         * @param attributes Attributes of the file or folder.
+         */
+        void accept(String name, String path, BasicFileAttributes attributes);
+    }
+
+    /**
+     * File or folder to index.
+     */
+    static final class FileEntry {
+        private final String name;
+        private final String path;
+        private final boolean indexContent;
+
+        /**
+         * Creates instance of {@link FileEntry}.
+         *
+         * @param name         File name.
+         * @param path         Decoded path relative to the root folder.
+         * @param indexContent Whether to index the content of the file.
+         */
+        FileEntry(String name, String path, boolean indexContent) {
+            this.name = name;
+            this.path = path;
+            this.indexContent = indexContent;
+        }
+    }
 
     /**
-     * Indexes files in storage using Apache Lucene engine for indexing and Apache Tika.
+     * Indexes files in storage using Apache Lucene engine for indexing and Apache Tika to read content.
      */
     static class Indexer extends RecursiveAction {
         static final int MAX_CONTENT_LENGTH = 10 * 1024 * 1024;
+        static final int BATCH_SIZE = 100;
         private static final int TASK_INTERVAL = 30 * 1000;
         static final String PATH = "path";
         static final String NAME = "name";
-        static final String PARENT_NAME = "parent_name";
+        // Ancestor folders of the item, "/a/b/c.txt" is indexed as "/a" and "/a/b" terms.
+        static final String PARENT_PATH = "parent_path";
         static final String CONTENTS = "contents";
+        static final String SNIPPET_TEXT = "snippet_text";
+        // Snippets are highlighted only in the beginning of the content, the same length the highlighter analyzes.
+        static final int MAX_SNIPPET_TEXT_LENGTH = Highlighter.DEFAULT_MAX_CHARS_TO_ANALYZE;
+        // Stored with term vectors and offsets, so highlighting does not analyze the text again.
+        private static final FieldType SNIPPET_TEXT_TYPE = new FieldType();
+
+        static {
+            SNIPPET_TEXT_TYPE.setIndexOptions(IndexOptions.DOCS);
+            SNIPPET_TEXT_TYPE.setTokenized(true);
+            SNIPPET_TEXT_TYPE.setStored(true);
+            SNIPPET_TEXT_TYPE.setStoreTermVectors(true);
+            SNIPPET_TEXT_TYPE.setStoreTermVectorPositions(true);
+            SNIPPET_TEXT_TYPE.setStoreTermVectorOffsets(true);
+            SNIPPET_TEXT_TYPE.freeze();
+        }
+        static final String MODIFIED = "modified";
+        static final String SIZE = "size";
         private final IndexWriter indexWriter;
-        private final List<HierarchyItem> files;
+        private final List<FileEntry> files;
         private final Logger logger;
-        private final Tika tika;
+        private final ContentExtractor extractor;
         private final String dataRoot;
-        private static final int BATCH_SIZE = 100;
+        private final int from;
+        private final int to;
 
         /**
          * Create instance of Indexer file.
          *
-         * @param iw       {@link IndexWriter} Lucene index writer.
-         * @param files    List of the file to index.
-         * @param logger   {@link Logger}.
-         * @param tika     {@link Tika} to read content.
-         * @param dataRoot Files location root folder.
+         * @param iw        {@link IndexWriter} Lucene index writer.
+         * @param files     List of the file to index.
+         * @param logger    {@link Logger}.
+         * @param extractor {@link ContentExtractor} to read content.
+         * @param dataRoot  Files location root folder.
          */
-        private Indexer(IndexWriter iw, List<HierarchyItem> files, Logger logger, Tika tika, String dataRoot) {
+        private Indexer(IndexWriter iw, List<FileEntry> files, Logger logger, ContentExtractor extractor,
+                        String dataRoot) {
+            this(iw, files, 0, files.size(), logger, extractor, dataRoot);
+        }
+
+        /**
+         * Create instance of Indexer that indexes the range of the files.
+         *
+         * @param iw        {@link IndexWriter} Lucene index writer.
+         * @param files     List of the file to index.
+         * @param from      Index of the first file to index, inclusive.
+         * @param to        Index of the last file to index, exclusive.
+         * @param logger    {@link Logger}.
+         * @param extractor {@link ContentExtractor} to read content.
+         * @param dataRoot  Files location root folder.
+         */
+        private Indexer(IndexWriter iw, List<FileEntry> files, int from, int to, Logger logger,
+                        ContentExtractor extractor, String dataRoot) {
             this.indexWriter = iw;
             this.files = files;
+            this.from = from;
+            this.to = to;
             this.logger = logger;
-            this.tika = tika;
+            this.extractor = extractor;
             this.dataRoot = dataRoot;
         }
 
         @Override
         protected void compute() {
-            if (files.size() > BATCH_SIZE) {
-                List<Indexer> tasks = new ArrayList<>();
-                List<List<HierarchyItem>> partitioned = chopped(files, BATCH_SIZE);
-                for (List<HierarchyItem> sublist : partitioned) {
-                    tasks.add(new Indexer(indexWriter, sublist, logger, tika, dataRoot));
-                }
-                invokeAll(tasks);
+            if (to - from > BATCH_SIZE) {
+                // Split the range in halves, idle pool threads steal the forked half.
+                int middle = (from + to) >>> 1;
+                invokeAll(new Indexer(indexWriter, files, from, middle, logger, extractor, dataRoot),
+                        new Indexer(indexWriter, files, middle, to, logger, extractor, dataRoot));
             } else {
-                for (HierarchyItem f : files) {
-                    try {
-                        indexFile(f.getName(), f.getPath(), null, f);
-                    } catch (Throwable e) {
-                        logger.logDebug("Cannot find path for this file.");
-                    }
+                for (int i = from; i < to; i++) {
+                    FileEntry f = files.get(i);
+                    indexFile(f.name, f.path, null, f.indexContent);
                 }
             }
         }
 
-        private static <T> List<List<T>> chopped(List<T> list, final int l) {
-            List<List<T>> parts = new ArrayList<>();
-            final int n = list.size();
-            for (int i = 0; i < n; i += l) {
-                parts.add(new ArrayList<>(
-                        list.subList(i, Math.min(n, i + l)))
-                );
-            }
-            return parts;
-        }
-
         /**
          * Indexes file.
          *
@@ -242,27 +469,48 @@ class SearchFacade {
          * @param oldPath     Old relative path of the file if it was moved.
          */
         void indexFile(String fileName, String currentPath, String oldPath, HierarchyItem item) {
+            indexFile(fileName, currentPath, oldPath, item instanceof FileImpl);
+        }
+
+        /**
+         * Indexes file.
+         *
+         * @param fileName     File name to add to index.
+         * @param currentPath  Current relative path of the file.
+         * @param oldPath      Old relative path of the file if it was moved.
+         * @param indexContent Whether to index the content of the file.
+         */
+        void indexFile(String fileName, String currentPath, String oldPath, boolean indexContent) {
             Path fullPath = Paths.get(dataRoot, currentPath);
             try {
-                Metadata metadata = new Metadata();
                 Document doc = new Document();
-                String parentFolder = currentPath.replace(fileName, "").replace("/", "");
                 Field pathField = new StringField(PATH, currentPath, Field.Store.YES);
-                Field parentField = new TextField(PARENT_NAME, parentFolder, Field.Store.YES);
+                Field parentField = new TextField(PARENT_PATH, tokenizePath(getParentPath(currentPath)));
                 Field nameField = new TextField(NAME, fileName, Field.Store.YES);
                 doc.add(pathField);
                 doc.add(parentField);
                 doc.add(nameField);
-                if (item instanceof FileImpl) {
-                    try (TikaInputStream stream = TikaInputStream.get(fullPath, metadata)) {
-                        String content = tika.parseToString(stream, metadata, MAX_CONTENT_LENGTH);
-                        doc.add(new TextField(CONTENTS, content, Field.Store.YES));
-                    } catch (Throwable e) {
-                        if (!(e instanceof ZeroByteFileException)) {
-                            logger.logError("Error while indexing content: " + fullPath, e);
+                // Path, modification time and size are used to find changed files on the next start.
+                BasicFileAttributes attributes = Files.readAttributes(fullPath, BasicFileAttributes.class);
+                doc.add(new BinaryDocValuesField(PATH, new BytesRef(currentPath)));
+                boolean complete = true;
+                if (indexContent) {
+                    try {
+                        String content = extractor.extract(fullPath, attributes.size());
+                        if (content != null) {
+                            doc.add(new TextField(CONTENTS, content, Field.Store.NO));
+                            doc.add(new Field(SNIPPET_TEXT, content.length() > MAX_SNIPPET_TEXT_LENGTH
+                                    ? content.substring(0, MAX_SNIPPET_TEXT_LENGTH) : content, SNIPPET_TEXT_TYPE));
                         }
+                    } catch (TimeoutException e) {
+                        complete = false;
                     }
                 }
+                // File which content was not extracted in time is indexed again on the next start.
+                if (complete) {
+                    doc.add(new NumericDocValuesField(MODIFIED, attributes.lastModifiedTime().toMillis()));
+                    doc.add(new NumericDocValuesField(SIZE, attributes.size()));
+                }
                 if (indexWriter.getConfig().getOpenMode() == IndexWriterConfig.OpenMode.CREATE) {
                     indexWriter.addDocument(doc);
                 } else {
@@ -273,6 +521,19 @@ class SearchFacade {
             }
         }
 
+        // Returns path of the parent folder without trailing slash, empty for items in the root folder.
+        private static String getParentPath(String path) {
+            String itemPath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+            return itemPath.substring(0, Math.max(itemPath.lastIndexOf('/'), 0));
+        }
+
+        // Splits folder path into the paths of the folder and all its ancestors.
+        private static TokenStream tokenizePath(String path) {
+            Tokenizer tokenizer = new PathHierarchyTokenizer();
+            tokenizer.setReader(new StringReader(path));
+            return tokenizer;
+        }
+
         /**
          * Close index and release lock
          */
@@ -291,7 +552,20 @@ class SearchFacade {
          */
         void deleteIndex(HierarchyItem file) {
             try {
-                indexWriter.deleteDocuments(new Term(PATH, file.getPath()));
+                deleteIndex(file.getPath());
+            } catch (Throwable e) {
+                logger.logError("Cannot delete index for the file.", e);
+            }
+        }
+
+        /**
+         * Deletes specified file information from the index.
+         *
+         * @param path Relative path of the file to delete from index.
+         */
+        void deleteIndex(String path) {
+            try {
+                indexWriter.deleteDocuments(new Term(PATH, path));
             } catch (Throwable e) {
                 logger.logError("Cannot delete index for the file.", e);
             }
@@ -322,7 +596,10 @@ class SearchFacade {
             @Override
             public void run() {
                 try {
-                    indexWriter.commit();
+                    // Committing without changes only creates the new commit point and fragments the index.
+                    if (indexWriter.hasUncommittedChanges()) {
+                        indexWriter.commit();
+                    }
                 } catch (Throwable e) {
                     logger.logError("Cannot commit.", e);
                 }
@@ -338,38 +615,747 @@ class SearchFacade {
                 timer.scheduleAtFixedRate(this, 0, interval == null ? TASK_INTERVAL : interval * 1000);
             }
         }
+
+        /**
+         * Timer task implementation to merge index segments once a day at the off-peak hour.
+         */
+        static class MergeTask extends TimerTask {
+
+            private static final long DAY = TimeUnit.DAYS.toMillis(1);
+            private final IndexWriter indexWriter;
+            private final Logger logger;
+
+            /**
+             * Creates instance of {@link MergeTask}.
+             *
+             * @param indexWriter {@link IndexWriter} Lucene index writer.
+             * @param logger      {@link Logger}.
+             */
+            MergeTask(IndexWriter indexWriter, Logger logger) {
+                this.indexWriter = indexWriter;
+                this.logger = logger;
+            }
+
+            /**
+             * The action to be performed by this timer task.
+             */
+            @Override
+            public void run() {
+                try {
+                    long start = System.currentTimeMillis();
+                    // Merging needs free disk space up to the size of the index.
+                    indexWriter.forceMerge(1);
+                    if (indexWriter.hasUncommittedChanges()) {
+                        indexWriter.commit();
+                    }
+                    logger.logDebug("Index merged in " + (System.currentTimeMillis() - start) + " ms.");
+                } catch (Throwable e) {
+                    logger.logError("Cannot merge index.", e);
+                }
+            }
+
+            /**
+             * Schedule daily timer executions at the specified hour.
+             *
+             * @param hour Hour of the day, from 0 to 23.
+             */
+            void schedule(int hour) {
+                Calendar next = Calendar.getInstance();
+                next.set(Calendar.HOUR_OF_DAY, hour);
+                next.set(Calendar.MINUTE, 0);
+                next.set(Calendar.SECOND, 0);
+                next.set(Calendar.MILLISECOND, 0);
+                if (next.getTimeInMillis() <= System.currentTimeMillis()) {
+                    next.add(Calendar.DAY_OF_MONTH, 1);
+                }
+                Timer timer = new Timer(true);
+                timer.scheduleAtFixedRate(this, next.getTime(), DAY);
+            }
+        }
+    }
+
+    /**
+     * Extracts text content of the files with Apache Tika in a bounded pool of parser threads.
+     * Each file is parsed with a time limit, files over the size limit and files of types that are not
+     * in the allow-list are not parsed at all. The type is detected from the first bytes of the file,
+     * so binaries are skipped without running a parser.
+     * <p>
+     * Parsers do not always stop when interrupted. Parsing that is not finished in time is abandoned: its
+     * parser slot is freed and the next file is parsed in a new thread, while the abandoned thread finishes
+     * in background. At most as many parsings as there are parser threads may be abandoned at a time, after
+     * that the slots stay busy until abandoned parsing stops, so stuck parsers cannot start unlimited threads.
+     */
+    static class ContentExtractor {
+        private static final int DEFAULT_THREADS = 2;
+        private static final int DEFAULT_TIMEOUT = 30;
+        private static final int DEFAULT_MAX_FILE_SIZE = 100;
+        private static final String DEFAULT_TYPES = "text/,application/pdf,application/rtf,application/msword,"
+                + "application/vnd.openxmlformats-officedocument.,application/vnd.ms-,application/vnd.oasis.opendocument.,"
+                + "application/xml,application/xhtml+xml,application/json,message/rfc822";
+        private final Tika tika = new Tika();
+        private final ExecutorService executor;
+        private final Semaphore parsers;
+        private final long timeout;
+        private final long maxFileSize;
+        private final List<String> types = new ArrayList<>();
+        private final Logger logger;
+        private final AtomicLong extracted = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicInteger abandoned = new AtomicInteger();
+        private final int maxAbandoned;
+
+        /**
+         * Creates instance of {@link ContentExtractor}.
+         *
+         * @param threads     Number of files parsed at the same time.
+         * @param timeout     Time limit of parsing one file in seconds.
+         * @param maxFileSize Size of the largest file to parse in megabytes.
+         * @param types       Comma separated list of content types or type prefixes to parse.
+         * @param logger      {@link Logger}.
+         */
+        ContentExtractor(Integer threads, Integer timeout, Integer maxFileSize, String types, Logger logger) {
+            int count = threads == null || threads <= 0 ? DEFAULT_THREADS : threads;
+            this.timeout = TimeUnit.SECONDS.toMillis(timeout == null || timeout <= 0 ? DEFAULT_TIMEOUT : timeout);
+            this.maxFileSize = (maxFileSize == null || maxFileSize <= 0 ? DEFAULT_MAX_FILE_SIZE : maxFileSize) * 1024L * 1024L;
+            for (String type : (types == null || types.trim().isEmpty() ? DEFAULT_TYPES : types).split(",")) {
+                if (!type.trim().isEmpty()) {
+                    this.types.add(type.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            this.logger = logger;
+            tika.setMaxStringLength(MAX_CONTENT_LENGTH);
+            parsers = new Semaphore(count);
+            maxAbandoned = count;
+            AtomicLong number = new AtomicLong();
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "Content extractor " + number.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * Returns text content of the file. Waits for a free parser up to the time limit of parsing,
+         * time limit of parsing starts when the parser is acquired.
+         *
+         * @param path Full path of the file in the file system.
+         * @param size Size of the file in bytes.
+         * @return Text content or null if the file was skipped or could not be parsed.
+         * @throws TimeoutException if the file was not parsed in time, no parser was free or extraction was stopped,
+         *                          so it can be retried.
+         */
+        String extract(Path path, long size) throws TimeoutException {
+            if (size == 0) {
+                return "";
+            }
+            if (size > maxFileSize) {
+                skipped.incrementAndGet();
+                return null;
+            }
+            try {
+                // Callers are indexing threads, so waiting for a parser limits the number of files indexed at the same time.
+                if (!parsers.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    timeouts.incrementAndGet();
+                    throw new TimeoutException("No free parser: " + path);
+                }
+                long deadline = System.currentTimeMillis() + timeout;
+                // Parser slot is freed either by the parsing thread or by the caller which abandons it.
+                AtomicBoolean slot = new AtomicBoolean(true);
+                Future<String> future;
+                try {
+                    future = executor.submit(() -> {
+                        try {
+                            return parse(path);
+                        } finally {
+                            if (slot.compareAndSet(true, false)) {
+                                parsers.release();
+                            } else {
+                                abandoned.decrementAndGet();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    parsers.release();
+                    throw new TimeoutException("Content extraction is stopped: " + path);
+                }
+                try {
+                    String content = future.get(Math.max(deadline - System.currentTimeMillis(), 1), TimeUnit.MILLISECONDS);
+                    if (content == null) {
+                        skipped.incrementAndGet();
+                    } else {
+                        extracted.incrementAndGet();
+                    }
+                    return content;
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    timeouts.incrementAndGet();
+                    abandon(slot, path);
+                    throw e;
+                } catch (ExecutionException e) {
+                    failures.incrementAndGet();
+                    logger.logError("Error while indexing content: " + path, e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("Content extraction is interrupted: " + path);
+            }
+            return null;
+        }
+
+        // Frees the parser slot of the parsing that did not stop in time, unless too many parsings are abandoned.
+        private void abandon(AtomicBoolean slot, Path path) {
+            if (abandoned.incrementAndGet() <= maxAbandoned && slot.compareAndSet(true, false)) {
+                parsers.release();
+                logger.logDebug("Content extraction timed out, parsing is abandoned: " + path);
+            } else {
+                abandoned.decrementAndGet();
+                logger.logDebug("Content extraction timed out: " + path);
+            }
+        }
+
+        // Detects file type from the file content and name, parses only allowed types.
+        private String parse(Path path) throws Exception {
+            Metadata metadata = new Metadata();
+            try (TikaInputStream stream = TikaInputStream.get(path, metadata)) {
+                String type = tika.detect(stream, metadata).toLowerCase(Locale.ROOT);
+                if (types.stream().noneMatch(type::startsWith)) {
+                    return null;
+                }
+                return tika.parseToString(stream, metadata, MAX_CONTENT_LENGTH);
+            } catch (ZeroByteFileException e) {
+                return "";
+            }
+        }
+
+        /**
+         * Stops parser threads. Parsing that is in progress is interrupted.
+         */
+        void close() {
+            executor.shutdownNow();
+        }
+
+        @Override
+        public String toString() {
+            return "Content extraction: " + extracted.get() + " files parsed, " + skipped.get() + " skipped, "
+                    + timeouts.get() + " timed out, " + failures.get() + " failed, " + abandoned.get() + " abandoned";
+        }
+    }
+
+    /**
+     * Settings of the Lucene index writer: size of the RAM buffer, merge policy, number of merge threads
+     * and the hour of the daily segments merge.
+     */
+    static class WriterSettings {
+        private static final int DEFAULT_RAM_BUFFER_SIZE = 64;
+        private static final int DEFAULT_SEGMENTS_PER_TIER = 10;
+        private static final int DEFAULT_MERGE_HOUR = 3;
+        private final double ramBufferSize;
+        private final double segmentsPerTier;
+        private final Integer mergeThreads;
+        private final int mergeHour;
+
+        /**
+         * Creates instance of {@link WriterSettings}.
+         *
+         * @param ramBufferSize   Size of the buffer for added documents in megabytes, a new segment is flushed when it is full.
+         * @param segmentsPerTier Number of segments of the similar size allowed before they are merged.
+         * @param mergeThreads    Maximum number of threads merging segments in background.
+         * @param mergeHour       Hour of the day to merge all segments into one, negative value disables merging.
+         */
+        WriterSettings(Integer ramBufferSize, Integer segmentsPerTier, Integer mergeThreads, Integer mergeHour) {
+            this.ramBufferSize = ramBufferSize == null || ramBufferSize <= 0 ? DEFAULT_RAM_BUFFER_SIZE : ramBufferSize;
+            this.segmentsPerTier = segmentsPerTier == null || segmentsPerTier < 2 ? DEFAULT_SEGMENTS_PER_TIER : segmentsPerTier;
+            this.mergeThreads = mergeThreads == null || mergeThreads <= 0 ? null : mergeThreads;
+            this.mergeHour = mergeHour == null || mergeHour > 23 ? DEFAULT_MERGE_HOUR : mergeHour;
+        }
+
+        /**
+         * Creates index writer configuration with these settings.
+         *
+         * @param analyzer Analyzer of the indexed text.
+         * @return Index writer configuration.
+         */
+        IndexWriterConfig createConfig(Analyzer analyzer) {
+            IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+            conf.setRAMBufferSizeMB(ramBufferSize);
+            TieredMergePolicy mergePolicy = new TieredMergePolicy();
+            mergePolicy.setSegmentsPerTier(segmentsPerTier);
+            conf.setMergePolicy(mergePolicy);
+            if (mergeThreads != null) {
+                ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+                // Merges waiting for a thread over this number stall indexing threads.
+                mergeScheduler.setMaxMergesAndThreads(mergeThreads + 5, mergeThreads);
+                conf.setMergeScheduler(mergeScheduler);
+            }
+            return conf;
+        }
+
+        /**
+         * Returns hour of the day to merge all index segments into one.
+         *
+         * @return Hour from 0 to 23 or negative value if merging is disabled.
+         */
+        int getMergeHour() {
+            return mergeHour;
+        }
+    }
+
+    /**
+     * Throughput of the storage indexing, collected per indexed batch of files.
+     */
+    static class IndexMetrics {
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong batchNanos = new AtomicLong();
+        private final AtomicLong lastBatchNanos = new AtomicLong();
+        private final AtomicLong lastBatchFiles = new AtomicLong();
+        private final long started = System.nanoTime();
+
+        private void addBatch(int count, long nanos) {
+            files.addAndGet(count);
+            batches.incrementAndGet();
+            batchNanos.addAndGet(nanos);
+            lastBatchFiles.set(count);
+            lastBatchNanos.set(nanos);
+        }
+
+        /**
+         * Returns number of indexed files.
+         *
+         * @return Number of files.
+         */
+        long getFiles() {
+            return files.get();
+        }
+
+        /**
+         * Returns number of indexed batches.
+         *
+         * @return Number of batches.
+         */
+        long getBatches() {
+            return batches.get();
+        }
+
+        /**
+         * Returns number of files indexed per second since indexing started.
+         *
+         * @return Files per second.
+         */
+        double getThroughput() {
+            return perSecond(files.get(), System.nanoTime() - started);
+        }
+
+        /**
+         * Returns number of files indexed per second by the last batch.
+         *
+         * @return Files per second.
+         */
+        double getLastBatchThroughput() {
+            return perSecond(lastBatchFiles.get(), lastBatchNanos.get());
+        }
+
+        /**
+         * Returns average time of indexing one batch in milliseconds.
+         *
+         * @return Average batch time.
+         */
+        long getAverageBatchMillis() {
+            long count = batches.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(batchNanos.get() / count);
+        }
+
+        private static double perSecond(long count, long nanos) {
+            return nanos <= 0 ? 0 : count * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Indexed %d files in %d batches, %.1f files/s, last batch %.1f files/s, "
+                            + "average batch %d ms", getFiles(), getBatches(), getThroughput(),
+                    getLastBatchThroughput(), getAverageBatchMillis());
+        }
+    }
+
+    /**
+     * Paths, modification times and sizes of the files in the index, read from the index doc values.
+     * Used at startup to index only files that were added or changed since the last run.
+     */
+    static class IndexManifest {
+        private static final String VERSION = "version";
+        // Increase when indexed fields change to rebuild existing indexes.
+        private static final String INDEX_VERSION = "4";
+        private final Map<String, long[]> files = new HashMap<>();
+
+        /**
+         * Reads files in the index. Clears the index if it was built by the other index version.
+         *
+         * @param indexWriter {@link IndexWriter} Lucene index writer.
+         * @param logger      {@link Logger}.
+         * @return Files in the index.
+         * @throws IOException in case the index cannot be read.
+         */
+        static IndexManifest load(IndexWriter indexWriter, Logger logger) throws IOException {
+            IndexManifest manifest = new IndexManifest();
+            String version = null;
+            Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    if (VERSION.equals(entry.getKey())) {
+                        version = entry.getValue();
+                    }
+                }
+            }
+            if (!INDEX_VERSION.equals(version)) {
+                logger.logDebug("Index version changed, rebuilding index.");
+                indexWriter.deleteAll();
+                indexWriter.setLiveCommitData(Collections.singletonMap(VERSION, INDEX_VERSION).entrySet());
+                return manifest;
+            }
+            try (DirectoryReader reader = DirectoryReader.open(indexWriter)) {
+                for (LeafReaderContext context : reader.leaves()) {
+                    manifest.read(context.reader());
+                }
+            }
+            return manifest;
+        }
+
+        private void read(LeafReader reader) throws IOException {
+            BinaryDocValues paths = reader.getBinaryDocValues(Indexer.PATH);
+            NumericDocValues modified = reader.getNumericDocValues(Indexer.MODIFIED);
+            NumericDocValues size = reader.getNumericDocValues(Indexer.SIZE);
+            if (paths == null) {
+                return;
+            }
+            Bits liveDocs = reader.getLiveDocs();
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if ((liveDocs == null || liveDocs.get(doc)) && paths.advanceExact(doc)) {
+                    // Files indexed without content have no modification time and size, so they are indexed again.
+                    boolean complete = modified != null && size != null && modified.advanceExact(doc) && size.advanceExact(doc);
+                    files.put(paths.binaryValue().utf8ToString(),
+                            complete ? new long[]{modified.longValue(), size.longValue()} : new long[]{-1, -1});
+                }
+            }
+        }
+
+        /**
+         * Checks whether file is not in the index or was changed since it was indexed.
+         * Checked file is removed from the manifest.
+         *
+         * @param path     Relative path of the file.
+         * @param modified Modification time of the file.
+         * @param size     Size of the file.
+         * @return True if file needs to be indexed.
+         */
+        boolean isChanged(String path, long modified, long size) {
+            long[] indexed = files.remove(path);
+            return indexed == null || indexed[0] != modified || indexed[1] != size;
+        }
+
+        /**
+         * Returns paths of the indexed files which were not checked, that is which were deleted from storage.
+         *
+         * @return Paths of deleted files.
+         */
+        Set<String> getRemaining() {
+            return files.keySet();
+        }
+    }
+
+    /**
+     * Indexes changed files in background threads, so request threads do not wait for file content parsing.
+     * Requests are coalesced by path: if a file is changed several times before it is indexed, only its
+     * last version is indexed. If queue is full, callers wait until workers free the space, but not longer
+     * than a few seconds, so request threads are not blocked by stuck indexing. Change that did not fit into
+     * the queue is not indexed until the next start, when index is updated with all changed and deleted files.
+     */
+    static class IndexQueue {
+        private static final int DEFAULT_WORKERS = 2;
+        private static final int DEFAULT_CAPACITY = 1000;
+        private static final long DRAIN_TIMEOUT = 30 * 1000;
+        private static final long PUT_TIMEOUT = 5 * 1000;
+        private final Indexer indexer;
+        private final Logger logger;
+        private final int capacity;
+        private final Map<String, IndexRequest> pending = new LinkedHashMap<>();
+        private final Set<String> inProgress = new HashSet<>();
+        private final List<Thread> workers = new ArrayList<>();
+        private boolean stopped;
+
+        /**
+         * Creates instance of {@link IndexQueue} and starts workers.
+         *
+         * @param indexer     {@link Indexer} to index files with.
+         * @param logger      {@link Logger}.
+         * @param workerCount Number of background indexing threads.
+         * @param capacity    Maximum number of files waiting for indexing.
+         */
+        private IndexQueue(Indexer indexer, Logger logger, Integer workerCount, Integer capacity) {
+            this.indexer = indexer;
+            this.logger = logger;
+            this.capacity = capacity == null || capacity <= 0 ? DEFAULT_CAPACITY : capacity;
+            int count = workerCount == null || workerCount <= 0 ? DEFAULT_WORKERS : workerCount;
+            for (int i = 0; i < count; i++) {
+                Thread worker = new Thread(this::work, "Index worker " + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        /**
+         * Queues file for indexing.
+         *
+         * @param fileName    File name to add to index.
+         * @param currentPath Current relative path of the file.
+         * @param oldPath     Old relative path of the file if it was moved.
+         * @param item        Item to index. Content is indexed for files only.
+         */
+        void indexFile(String fileName, String currentPath, String oldPath, HierarchyItem item) {
+            indexFile(fileName, currentPath, oldPath, item instanceof FileImpl);
+        }
+
+        /**
+         * Queues file for indexing.
+         *
+         * @param fileName     File name to add to index.
+         * @param currentPath  Current relative path of the file.
+         * @param oldPath      Old relative path of the file if it was moved.
+         * @param indexContent Whether to index the content of the file.
+         */
+        void indexFile(String fileName, String currentPath, String oldPath, boolean indexContent) {
+            put(new IndexRequest(currentPath, oldPath, fileName, indexContent, false));
+        }
+
+        /**
+         * Queues deletion of the file information from the index.
+         *
+         * @param file {@link HierarchyItem} to delete from index.
+         * @throws ServerException in case path of the item cannot be read.
+         */
+        void deleteIndex(HierarchyItem file) throws ServerException {
+            deleteIndex(file.getPath());
+        }
+
+        /**
+         * Queues deletion of the file information from the index.
+         *
+         * @param path Relative path of the file to delete from index.
+         */
+        void deleteIndex(String path) {
+            put(new IndexRequest(path, null, null, false, true));
+        }
+
+        /**
+         * Stops accepting new files and waits until queued files are indexed.
+         */
+        void drain() {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
+            long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+            try {
+                for (Thread worker : workers) {
+                    worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (!pending.isEmpty()) {
+                    logger.logDebug("Index queue was not drained, " + pending.size() + " files are not indexed.");
+                }
+            }
+        }
+
+        private synchronized void put(IndexRequest request) {
+            if (stopped) {
+                logger.logDebug("Index queue is stopped, file is not indexed: " + request.path);
+                return;
+            }
+            long deadline = System.currentTimeMillis() + PUT_TIMEOUT;
+            while (pending.size() >= capacity && !pending.containsKey(request.path) && !stopped) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    logger.logDebug("Index queue is full, file is not indexed until restart: " + request.path);
+                    return;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            IndexRequest previous = pending.remove(request.path);
+            if (previous != null && request.oldPath == null) {
+                // Document of the previous version is still indexed under the path it had before move.
+                request.oldPath = previous.oldPath;
+            }
+            if (request.oldPath != null) {
+                previous = pending.remove(request.oldPath);
+                if (previous != null && previous.oldPath != null) {
+                    request.oldPath = previous.oldPath;
+                }
+            }
+            pending.put(request.path, request);
+            notifyAll();
+        }
+
+        private synchronized IndexRequest take() {
+            while (true) {
+                Iterator<IndexRequest> iterator = pending.values().iterator();
+                while (iterator.hasNext()) {
+                    IndexRequest request = iterator.next();
+                    // Same document must not be indexed by two workers at a time.
+                    if (!inProgress.contains(request.path)
+                            && (request.oldPath == null || !inProgress.contains(request.oldPath))) {
+                        iterator.remove();
+                        inProgress.add(request.path);
+                        if (request.oldPath != null) {
+                            inProgress.add(request.oldPath);
+                        }
+                        notifyAll();
+                        return request;
+                    }
+                }
+                if (stopped && pending.isEmpty()) {
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+        }
+
+        private synchronized void done(IndexRequest request) {
+            inProgress.remove(request.path);
+            if (request.oldPath != null) {
+                inProgress.remove(request.oldPath);
+            }
+            notifyAll();
+        }
+
+        private void work() {
+            IndexRequest request;
+            while ((request = take()) != null) {
+                try {
+                    if (request.delete) {
+                        indexer.deleteIndex(request.path);
+                        if (request.oldPath != null) {
+                            indexer.deleteIndex(request.oldPath);
+                        }
+                    } else {
+                        indexer.indexFile(request.fileName, request.path, request.oldPath, request.indexContent);
+                    }
+                } catch (Throwable e) {
+                    logger.logError("Error while indexing file: " + request.path, e);
+                } finally {
+                    done(request);
+                }
+            }
+        }
+
+        /**
+         * Queued change of the file.
+         */
+        private static class IndexRequest {
+            private final String path;
+            private String oldPath;
+            private final String fileName;
+            private final boolean indexContent;
+            private final boolean delete;
+
+            private IndexRequest(String path, String oldPath, String fileName, boolean indexContent, boolean delete) {
+                this.path = path;
+                this.oldPath = oldPath;
+                this.fileName = fileName;
+                this.indexContent = indexContent;
+                this.delete = delete;
+            }
+        }
     }
 
     /**
      * Search files information in Lucene index.
+     * Searches are executed on the shared near-real-time searcher opened from the index writer,
+     * which is refreshed with index changes in background.
      */
     static class Searcher {
 
-        private final String indexFolder;
+        private static final int REFRESH_INTERVAL = 1000;
+        private final SearcherManager searcherManager;
         private final QueryParser nameParser;
         private final QueryParser contentParser;
-        private final QueryParser parentParser;
+        private static final int MAX_CURSORS = 100;
+        private static final int SEARCH_BATCH = 1000;
+        private static final Set<String> PATH_FIELD = Collections.singleton(Indexer.PATH);
+        private static final Set<String> SNIPPET_FIELDS = new HashSet<>(Arrays.asList(Indexer.PATH, Indexer.SNIPPET_TEXT));
         private final Logger logger;
-        private IndexSearcher indexSearcher;
+        private Timer refreshTimer;
+        private final Map<String, ScoreDoc> cursors = new LinkedHashMap<String, ScoreDoc>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ScoreDoc> eldest) {
+                return size() > MAX_CURSORS;
+            }
+        };
 
         /**
          * Creates instance of {@link Searcher}.
          *
-         * @param indexFolder      Index folder absolute location.
+         * @param indexWriter      {@link IndexWriter} Lucene index writer.
          * @param standardAnalyzer Lucene {@link StandardAnalyzer}.
          * @param logger           {@link Logger}.
+         * @throws IOException in case the index cannot be opened.
          */
-        private Searcher(String indexFolder, StandardAnalyzer standardAnalyzer, Logger logger) {
-            this.indexFolder = indexFolder;
+        private Searcher(IndexWriter indexWriter, StandardAnalyzer standardAnalyzer, Logger logger) throws IOException {
+            searcherManager = new SearcherManager(indexWriter, null);
             nameParser = new QueryParser(Indexer.NAME, standardAnalyzer);
             nameParser.setAllowLeadingWildcard(true);
             contentParser = new QueryParser(Indexer.CONTENTS, standardAnalyzer);
             contentParser.setAllowLeadingWildcard(true);
-            parentParser = new QueryParser(Indexer.PARENT_NAME, standardAnalyzer);
-            parentParser.setAllowLeadingWildcard(true);
             this.logger = logger;
         }
 
+        /**
+         * Schedules refreshing of the searcher with index changes at the specified interval.
+         *
+         * @param interval Refresh interval in seconds.
+         */
+        private void scheduleRefresh(Integer interval) {
+            refreshTimer = new Timer(true);
+            long period = interval == null || interval <= 0 ? REFRESH_INTERVAL : interval * 1000;
+            refreshTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        searcherManager.maybeRefresh();
+                    } catch (Throwable e) {
+                        logger.logError("Cannot refresh index searcher.", e);
+                    }
+                }
+            }, period, period);
+        }
+
+        /**
+         * Stops refreshing and releases searcher resources.
+         */
+        void close() {
+            if (refreshTimer != null) {
+                refreshTimer.cancel();
+            }
+            try {
+                searcherManager.close();
+            } catch (Throwable e) {
+                logger.logError("Cannot release searcher resources", e);
+            }
+        }
+
         /**
          * Searches files by search line either in file name or in content.
          * <p>
@@ -387,90 +1373,171 @@ class SearchFacade {
          * @param searchLine Line to search.
          * @param options    {@link SearchOptions} indicates where to search.
          * @param parent     Folder location in which to search.
-         * @return Map of paths to found items.
+         * @param snippet    Whether to highlight found words in the content of the hits.
+         * @param offset     Number of hits to skip, null to return all hits.
+         * @param nResults   Number of hits to return, null to return all hits.
+         * @return Hits on the requested page and total number of hits.
          */
-        Map<String, String> search(String searchLine, SearchOptions options, String parent, boolean snippet) {
+        SearchResult search(String searchLine, SearchOptions options, String parent, boolean snippet,
+                            Long offset, Long nResults) {
             searchLine = StringEscapeUtils.escapeJava(searchLine);
             searchLine = searchLine.replace("%", "*");
             searchLine = searchLine.replace("_", "?");
-            Map<String, String> paths = new LinkedHashMap<>();
-            try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexFolder)))) {
-                indexSearcher = new IndexSearcher(reader);
-                if (options.isSearchContent()) {
-                    paths.putAll(searchContent(searchLine, parent, snippet, reader));
-                }
-                if (options.isSearchName()) {
-                    paths.putAll(searchName(searchLine, parent));
+            SearchResult result = new SearchResult();
+            IndexSearcher indexSearcher = null;
+            try {
+                indexSearcher = searcherManager.acquire();
+                Query query = buildQuery(searchLine, options, parent);
+                if (query != null) {
+                    searchPage(indexSearcher, query, snippet, offset, nResults, result);
                 }
             } catch (Throwable e) {
                 logger.logError("Error while doing index search.", e);
+            } finally {
+                if (indexSearcher != null) {
+                    try {
+                        searcherManager.release(indexSearcher);
+                    } catch (IOException e) {
+                        logger.logError("Cannot release index searcher.", e);
+                    }
+                }
+            }
+            return result;
+        }
+
+        // Builds query that searches either in file name or in content or in both of them
+        private Query buildQuery(String searchLine, SearchOptions options, String parent) throws ParseException {
+            BooleanQuery.Builder match = new BooleanQuery.Builder();
+            if (options.isSearchContent()) {
+                match.add(contentParser.parse(searchLine), BooleanClause.Occur.SHOULD);
+            }
+            if (options.isSearchName()) {
+                match.add(nameParser.parse(searchLine), BooleanClause.Occur.SHOULD);
             }
-            return paths;
+            BooleanQuery matchQuery = match.build();
+            if (matchQuery.clauses().isEmpty()) {
+                return null;
+            }
+            return addParentQuery(parent, matchQuery).build();
         }
 
-        //  Searches files by search line in file name
-        private Map<String, String> searchName(String searchLine, String parent) throws Exception {
-            Query query = nameParser.parse(searchLine);
-            BooleanQuery.Builder finalQuery = addParentQuery(parent, query);
-            return search(finalQuery.build());
+        // Collects hits of the requested page. Next page continues after the last hit of the previous page
+        // if the previous page was requested from the same index version. Hits are fetched in batches of
+        // at most SEARCH_BATCH, so neither a deep page nor an unpaged search allocates a hit queue per
+        // indexed document.
+        private void searchPage(IndexSearcher indexSearcher, Query query, boolean snippet, Long offset,
+                                Long nResults, SearchResult result) throws Exception {
+            IndexReader indexReader = indexSearcher.getIndexReader();
+            boolean paged = offset != null && nResults != null;
+            long start = paged ? Math.max(offset, 0) : 0;
+            long pageSize = paged ? Math.max(nResults, 0) : Long.MAX_VALUE;
+            String cursorKey = ((DirectoryReader) indexReader).getVersion() + "|" + query + "|";
+            ScoreDoc after = start > 0 ? getCursor(cursorKey + start) : null;
+            long skip = after != null ? 0 : start;
+            Highlighter highlighter = null;
+            if (snippet) {
+                QueryScorer queryScorer = new QueryScorer(query, Indexer.CONTENTS);
+                highlighter = new Highlighter(new SimpleHTMLFormatter(), queryScorer);
+                highlighter.setTextFragmenter(new SimpleSpanFragmenter(queryScorer));
+            }
+            long collected = 0;
+            boolean counted = false;
+            while (true) {
+                int batch = (int) Math.max(1, Math.min(SEARCH_BATCH, skip > 0 ? skip : pageSize - collected));
+                TopDocs topDocs = indexSearcher.searchAfter(after, query, batch);
+                if (!counted) {
+                    result.total = topDocs.totalHits;
+                    counted = true;
+                }
+                // Only hits on the page are loaded and highlighted.
+                for (ScoreDoc hit : topDocs.scoreDocs) {
+                    if (skip > 0) {
+                        skip--;
+                    } else if (collected < pageSize) {
+                        addHit(indexSearcher, hit, highlighter, result);
+                        collected++;
+                    }
+                    after = hit;
+                }
+                if (topDocs.scoreDocs.length < batch || (skip == 0 && collected >= pageSize)) {
+                    break;
+                }
+            }
+            if (paged && collected > 0 && collected == pageSize) {
+                putCursor(cursorKey + (start + pageSize), after);
+            }
         }
 
-        //  Searches files by search line in file content
-        private Map<String, String> searchContent(String searchLine, String parent, boolean withSnippet, IndexReader indexReader) throws Exception {
-            Query query = contentParser.parse(searchLine);
-            BooleanQuery.Builder finalQuery = addParentQuery(parent, query);
-            BooleanQuery booleanQuery = finalQuery.build();
-            if (withSnippet) {
-                return searchWithSnippet(indexReader, booleanQuery);
+        // Loads the path of the hit and, if requested, highlights found words in its content.
+        private void addHit(IndexSearcher indexSearcher, ScoreDoc hit, Highlighter highlighter,
+                            SearchResult result) throws Exception {
+            if (highlighter != null) {
+                Document document = indexSearcher.doc(hit.doc, SNIPPET_FIELDS);
+                String text = document.get(Indexer.SNIPPET_TEXT);
+                String fragment = null;
+                if (text != null) {
+                    TokenStream tokenStream = TokenSources.getTermVectorTokenStreamOrNull(Indexer.SNIPPET_TEXT,
+                            indexSearcher.getIndexReader().getTermVectors(hit.doc), -1);
+                    if (tokenStream != null) {
+                        fragment = highlighter.getBestFragment(tokenStream, text);
+                    }
+                }
+                result.hits.put(document.get(Indexer.PATH), fragment == null ? "" : fragment);
+            } else {
+                Document document = indexSearcher.doc(hit.doc, PATH_FIELD);
+                result.hits.put(document.get(Indexer.PATH), "");
             }
-            return search(booleanQuery);
         }
 
-        //  Searches files by search line in file name and adds highlights for found words
-        private Map<String, String> searchWithSnippet(IndexReader indexReader, Query query) throws Exception {
-            QueryScorer queryScorer = new QueryScorer(query, Indexer.CONTENTS);
-            Fragmenter fragmenter = new SimpleSpanFragmenter(queryScorer);
-            SimpleHTMLFormatter htmlFormatter = new SimpleHTMLFormatter();
-            Highlighter highlighter = new Highlighter(htmlFormatter, queryScorer);
-            highlighter.setTextFragmenter(fragmenter);
+        private ScoreDoc getCursor(String key) {
+            synchronized (cursors) {
+                return cursors.get(key);
+            }
+        }
 
-            ScoreDoc[] scoreDocs = indexSearcher.search(query, 100).scoreDocs;
-            Map<String, String> result = new LinkedHashMap<>();
-            for (ScoreDoc scoreDoc : scoreDocs) {
-                Document document = indexSearcher.doc(scoreDoc.doc);
-                String text = document.get(Indexer.CONTENTS);
-                String path = document.get(Indexer.PATH);
-                TokenStream tokenStream = TokenSources.getAnyTokenStream(indexReader,
-                        scoreDoc.doc, Indexer.CONTENTS, document, ANALYZER);
-                String fragment = highlighter.getBestFragment(tokenStream, text);
-                result.put(path, fragment == null ? "" : fragment);
+        private void putCursor(String key, ScoreDoc cursor) {
+            synchronized (cursors) {
+                cursors.put(key, cursor);
             }
-            return result;
         }
 
-        // Adds parent folder to the query to make search only in this folder
-        private BooleanQuery.Builder addParentQuery(String parent, Query query) throws ParseException {
+        // Adds parent folder to the query to make search only in this folder and its subfolders.
+        // Folder is matched with a single term of the path hierarchy field as a non-scoring filter,
+        // which is cached by the searcher, so the search costs the same for any folder depth.
+        private BooleanQuery.Builder addParentQuery(String parent, Query query) {
             BooleanQuery.Builder finalQuery = new BooleanQuery.Builder();
             finalQuery.add(query, BooleanClause.Occur.MUST); // MUST implies that the keyword must occur.
-            String searchString = parent.replace("/", "") + "*";
-            if (!Objects.equals(parent, "/")) {
-                Query parentQuery = parentParser.parse(searchString);
-                finalQuery.add(parentQuery, BooleanClause.Occur.MUST);
+            String folder = parent.endsWith("/") ? parent.substring(0, parent.length() - 1) : parent;
+            if (!folder.isEmpty()) {
+                finalQuery.add(new TermQuery(new Term(Indexer.PARENT_PATH, folder)), BooleanClause.Occur.FILTER);
             }
             return finalQuery;
         }
 
-        // Searches files by search query either in file name or in content.
-        private Map<String, String> search(Query query) throws IOException {
-            TopDocs search = indexSearcher.search(query, 100);
-            ScoreDoc[] hits = search.scoreDocs;
-            Map<String, String> paths = new LinkedHashMap<>();
-            for (ScoreDoc hit : hits) {
-                Document doc = indexSearcher.doc(hit.doc);
-                String path = doc.get(Indexer.PATH);
-                paths.put(path, "");
+        /**
+         * Page of the search hits.
+         */
+        static class SearchResult {
+            private final Map<String, String> hits = new LinkedHashMap<>();
+            private long total;
+
+            /**
+             * Returns hits on the page.
+             *
+             * @return Map of paths of found items to snippets of their content.
+             */
+            Map<String, String> getHits() {
+                return hits;
+            }
+
+            /**
+             * Returns total number of hits.
+             *
+             * @return Number of hits.
+             */
+            long getTotal() {
+                return total;
             }
-            return paths;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package com.ithit.webdav.samples.oraclestorageservlet;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of the DB connections opened from the data source that is looked up in JNDI only once.
+ * Connections are kept open between requests and validated when they are taken from the pool.
+ * <p>
+ * The pool holds connections of the container data source until it is closed, so the data source
+ * must allow at least as many active connections as the size of this pool, like maxActive of the
+ * DBCP resource in context.xml. Prepared statements are cached by the Oracle driver, enabled with
+ * the oracle.jdbc.implicitStatementCacheSize connection property of the data source.
+ */
+final class ConnectionPool {
+
+    static final String DATA_SOURCE = "jdbc/Oracle";
+    private static final int DEFAULT_SIZE = 8;
+    private static final int DEFAULT_TIMEOUT = 30;
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private final String dataSourceName;
+    private volatile DataSource dataSource;
+    private final long timeout;
+    private final Semaphore permits;
+    private final Queue<PooledConnection> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates instance of {@link ConnectionPool}.
+     *
+     * @param dataSourceName JNDI name of the data source to open connections from, like jdbc/Oracle.
+     * @param size           Maximum number of connections.
+     * @param timeout        Maximum time in seconds to wait for a free connection.
+     */
+    ConnectionPool(String dataSourceName, Integer size, Integer timeout) {
+        this.dataSourceName = dataSourceName;
+        this.permits = new Semaphore(size == null || size <= 0 ? DEFAULT_SIZE : size);
+        this.timeout = TimeUnit.SECONDS.toNanos(timeout == null || timeout <= 0 ? DEFAULT_TIMEOUT : timeout);
+    }
+
+    /**
+     * Looks up data source in the JNDI environment of the web application on first call.
+     *
+     * @return Data source.
+     * @throws SQLException if data source is not found.
+     */
+    private DataSource getDataSource() throws SQLException {
+        if (dataSource == null) {
+            synchronized (this) {
+                if (dataSource == null) {
+                    try {
+                        Context initContext = new InitialContext();
+                        Context envContext = (Context) initContext.lookup("java:comp/env");
+                        dataSource = (DataSource) envContext.lookup(dataSourceName);
+                    } catch (NamingException e) {
+                        throw new SQLException("Cannot find data source " + dataSourceName, e);
+                    }
+                }
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * Returns idle connection or opens the new one. Waits if all connections are in use.
+     * Idle connections that are no longer valid, like the ones closed by the DB, are discarded.
+     * Connection must be returned with {@link #release(PooledConnection)}.
+     *
+     * @return Connection with auto commit disabled.
+     * @throws SQLException if connection cannot be opened or no connection was released in time.
+     */
+    PooledConnection acquire() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+                throw new SQLException("Timed out waiting for a free DB connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        long waited = System.nanoTime() - start;
+        acquired.incrementAndGet();
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null && !connection.isValid()) {
+            connection.close();
+            discarded.incrementAndGet();
+        }
+        if (connection == null) {
+            try {
+                Connection dbConnection = getDataSource().getConnection();
+                dbConnection.setAutoCommit(false);
+                connection = new PooledConnection(dbConnection);
+                opened.incrementAndGet();
+            } catch (SQLException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        connection.waitNanos = waited;
+        return connection;
+    }
+
+    /**
+     * Returns connection to the pool. Changes that were not committed are rolled back.
+     * Connection that failed to roll back is closed.
+     *
+     * @param connection Connection returned by {@link #acquire()}.
+     */
+    void release(PooledConnection connection) {
+        boolean reuse = !closed;
+        try {
+            connection.connection.rollback();
+        } catch (SQLException e) {
+            reuse = false;
+        }
+        if (reuse) {
+            idle.offer(connection);
+        } else {
+            connection.close();
+        }
+        permits.release();
+        if (closed) {
+            closeIdle();
+        }
+    }
+
+    /**
+     * Closes idle connections. Connections in use are closed when released.
+     */
+    void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long count = acquired.get();
+        return "Connection pool: " + opened.get() + " opened, " + idle.size() + " idle, " + count + " acquired, average wait "
+                + (count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.get() / count)) + " ms, max wait "
+                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()) + " ms, " + discarded.get() + " discarded";
+    }
+
+    /**
+     * DB connection taken from the pool.
+     * Connection is used by one thread at a time, callers synchronize on this object.
+     */
+    final class PooledConnection {
+        private final Connection connection;
+        private long waitNanos;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns DB connection.
+         *
+         * @return Connection.
+         */
+        Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Prepares statement for the SQL. Closing the statement returns it to the statement cache of the driver.
+         *
+         * @param sql Query to prepare.
+         * @return Prepared statement.
+         * @throws SQLException in case of DB exception.
+         */
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            return connection.prepareStatement(sql);
+        }
+
+        /**
+         * Returns time spent waiting for this connection when it was acquired last time.
+         *
+         * @return Wait time in milliseconds.
+         */
+        long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        }
+
+        private boolean isValid() {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void close() {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
@@ -6,73 +6,57 @@ import com.ithit.webdav.server.Property;
 import com.ithit.webdav.server.exceptions.ServerException;
 import com.ithit.webdav.server.exceptions.WebDavStatus;
 
-import javax.naming.Context;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
-import javax.sql.DataSource;
 import java.io.UnsupportedEncodingException;
-import java.math.BigDecimal;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Helper class to work with DataBase access.
  */
 public class DataAccess {
 
+    private static final int BATCH_SIZE = 1000;
+    private static final int IN_LIST_SIZE = 1000;
     private final WebDavEngine engine;
-    private Connection currentConnection;
-    private String defaultTableSpace;
+    private final ConnectionPool connectionPool;
+    private final PathCache pathCache;
+    private ConnectionPool.PooledConnection currentConnection;
+    private final List<String> invalidatedPaths = new ArrayList<>();
 
     /**
      * Initialize {@link DataAccess} with {@link WebDavEngine}.
      *
-     * @param engine {@link WebDavEngine}.
+     * @param engine         {@link WebDavEngine}.
+     * @param connectionPool {@link ConnectionPool} to take the connection from.
+     * @param pathCache      {@link PathCache} with IDs of the folders.
      */
-    DataAccess(WebDavEngine engine) {
+    DataAccess(WebDavEngine engine, ConnectionPool connectionPool, PathCache pathCache) {
         this.engine = engine;
+        this.connectionPool = connectionPool;
+        this.pathCache = pathCache;
         engine.setDataAccess(this);
     }
 
-    private long getTotalBytesDB() {
-        try {
-            BigDecimal bytes = executeScalar("SELECT sum(bytes)" +
-                    "FROM dba_data_files " +
-                    "where tablespace_name=? " +
-                    "GROUP BY tablespace_name", defaultTableSpace);
-            return bytes.longValue();
-        } catch (Exception e) {
-            engine.getLogger().logError(e.getMessage(), e);
-            return 0;
-        }
-    }
-
     /**
-     * Returns connection to the DB.
+     * Returns connection to the DB. Connection is taken from the pool on first use.
      *
      * @return Connection.
      * @throws ServerException in case of errors.
      */
-    private Connection getConnection() throws ServerException {
+    private ConnectionPool.PooledConnection getConnection() throws ServerException {
         if (currentConnection == null) {
             try {
-                Locale.setDefault(Locale.US);
-                Context initContext = new InitialContext();
-                Context envContext = (Context) initContext.lookup("java:comp/env");
-                DataSource ds = (DataSource) envContext.lookup("jdbc/Oracle");
-
-                currentConnection = ds.getConnection();
-                currentConnection.setAutoCommit(false);
-
-            } catch (SQLException | NamingException e) {
+                currentConnection = connectionPool.acquire();
+            } catch (SQLException e) {
                 throw new ServerException(e);
             }
         }
@@ -81,46 +65,22 @@ public class DataAccess {
     }
 
     /**
-     * Returns default table space in which DB is stored.
-     *
-     * @return Default table space in which DB is stored.
-     */
-    String getDefaultTableSpace() {
-        if (defaultTableSpace == null) {
-            try {
-                defaultTableSpace = executeScalar("SELECT DEFAULT_TABLESPACE FROM DBA_USERS WHERE USERNAME = (SELECT USER FROM dual)");
-            } catch (Exception e) {
-                engine.getLogger().logError("Cannot acquire defaultTableSpace", e);
-            }
-        }
-        return defaultTableSpace;
-    }
-
-    /**
-     * Returns total bytes used by DB.
+     * Returns time spent waiting for a free connection in the pool.
      *
-     * @return Total bytes used by DB.
+     * @return Wait time in milliseconds, 0 if connection was not used.
      */
-    long getTotalBytes() {
-        try {
-            return getTotalBytesDB();
-        } catch (Exception e) {
-            engine.getLogger().logError("Cannot acquire totalBytes", e);
-        }
-        return 0;
+    long getConnectionWaitMillis() {
+        return currentConnection != null ? currentConnection.getWaitMillis() : 0;
     }
 
     /**
-     * Releases connection to the underlying DB.
+     * Returns connection to the pool.
      */
     void closeConnection() {
-        try {
-            if (currentConnection != null) {
-                currentConnection.close();
-                currentConnection = null;
-            }
-        } catch (SQLException e) {
-            engine.getLogger().logError("Failed to close connection", e);
+        invalidatePaths();
+        if (currentConnection != null) {
+            connectionPool.release(currentConnection);
+            currentConnection = null;
         }
     }
 
@@ -130,11 +90,12 @@ public class DataAccess {
     void rollback() {
         try {
             if (currentConnection != null) {
-                currentConnection.rollback();
+                currentConnection.getConnection().rollback();
             }
         } catch (SQLException e) {
             engine.getLogger().logError("Failed to rollback connection", e);
         }
+        invalidatePaths();
     }
 
     /**
@@ -145,10 +106,20 @@ public class DataAccess {
     void commit() throws ServerException {
         try {
             if (currentConnection != null)
-                currentConnection.commit();
+                currentConnection.getConnection().commit();
         } catch (SQLException ex) {
             throw new ServerException(ex);
+        } finally {
+            invalidatePaths();
+        }
+    }
+
+    // Concurrent lookups may have cached the IDs read before the transaction ended, so the paths are invalidated again.
+    private void invalidatePaths() {
+        for (String path : invalidatedPaths) {
+            pathCache.invalidate(path);
         }
+        invalidatedPaths.clear();
     }
 
     /**
@@ -178,31 +149,41 @@ public class DataAccess {
      */
     List<HierarchyItemImpl> readItems(String sql, final String path, final boolean parentPath, Object... args) throws ServerException {
 
-        ElementReader<HierarchyItemImpl> elementReader = rs -> {
-            int itemID = rs.getInt("ID");
-            int parentId = rs.getInt("Parent");
-            int itemType = rs.getByte("ItemType");
-            String itemName = rs.getString("Name");
-            long itemCreated = rs.getTimestamp("Created").getTime();
-            long itemModified = rs.getTimestamp("Modified").getTime();
-            long lastChunkSaved = rs.getTimestamp("LastChunkSaved").getTime();
-            long totalContentLength = rs.getLong("TotalContentLength");
-            String encodedName = encode(itemName);
-            String itemPath = parentPath ? (path.endsWith("/") ? path + encodedName : path + "/" + encodedName) : path;
-            switch (itemType) {
-                case ItemType.FILE:
-                    return new FileImpl(itemID, parentId, itemName, itemPath, itemCreated, itemModified, lastChunkSaved, totalContentLength, engine);
-                case ItemType.FOLDER:
-                    if (!itemPath.endsWith("/"))
-                        itemPath = itemPath + '/';
-                    return new FolderImpl(itemID, parentId, itemName, itemPath, itemCreated, itemModified, engine);
-                default:
-                    return null;
-            }
-
-        };
+        return readObjects(sql, rs -> createItem(rs, path, parentPath), args);
+    }
 
-        return readObjects(sql, elementReader, args);
+    /**
+     * Creates {@link HierarchyItemImpl} from the current row of the query result.
+     *
+     * @param rs         ResultSet at the position.
+     * @param path       Path to the item.
+     * @param parentPath Indicates whether it is path to the item or to the parent folder.
+     * @return HierarchyItemImpl or null if item type is unknown.
+     * @throws SQLException    in case of DB exception.
+     * @throws ServerException in case of error during encoding.
+     */
+    private HierarchyItemImpl createItem(ResultSet rs, String path, boolean parentPath) throws SQLException, ServerException {
+        int itemID = rs.getInt("ID");
+        int parentId = rs.getInt("Parent");
+        int itemType = rs.getByte("ItemType");
+        String itemName = rs.getString("Name");
+        long itemCreated = rs.getTimestamp("Created").getTime();
+        long itemModified = rs.getTimestamp("Modified").getTime();
+        long lastChunkSaved = rs.getTimestamp("LastChunkSaved").getTime();
+        long totalContentLength = rs.getLong("TotalContentLength");
+        long contentLength = rs.getLong("ContentLength");
+        String encodedName = encode(itemName);
+        String itemPath = parentPath ? (path.endsWith("/") ? path + encodedName : path + "/" + encodedName) : path;
+        switch (itemType) {
+            case ItemType.FILE:
+                return new FileImpl(itemID, parentId, itemName, itemPath, itemCreated, itemModified, lastChunkSaved, totalContentLength, contentLength, engine);
+            case ItemType.FOLDER:
+                if (!itemPath.endsWith("/"))
+                    itemPath = itemPath + '/';
+                return new FolderImpl(itemID, parentId, itemName, itemPath, itemCreated, itemModified, engine);
+            default:
+                return null;
+        }
     }
 
     /**
@@ -229,28 +210,37 @@ public class DataAccess {
      * @throws ServerException in case of DB exception.
      */
     List<LockInfo> readLocks(String sql, Object... args) throws ServerException {
-        ElementReader<LockInfo> elementReader = rs -> {
-            LockInfo li = new LockInfo();
-            li.setToken(rs.getString("Token"));
-            li.setShared(rs.getBoolean("Shared"));
-            li.setDeep(rs.getBoolean("Deep"));
-            if (rs.getDate("Expires") == null) {
-                li.setTimeout(-1);
-            } else {
-                java.util.Date expires = new java.util.Date(rs.getTimestamp("Expires").getTime());
-                if (expires.getTime() <= new java.util.Date().getTime()) {
-                    li.setTimeout(0);
-                } else
-                    li.setTimeout((expires.getTime() - new java.util.Date().getTime()) / 1000);
-            }
-            li.setOwner(rs.getString("Owner"));
+        return readObjects(sql, DataAccess::readLock, args);
+    }
 
-            if (li.getTimeout() != 0)
-                return li;
+    /**
+     * Reads lock from the current row of the query against Lock table.
+     *
+     * @param rs ResultSet at the position.
+     * @return LockInfo or null if the row has no lock or the lock has expired.
+     * @throws SQLException in case of DB exception.
+     */
+    static LockInfo readLock(ResultSet rs) throws SQLException {
+        if (rs.getString("Token") == null)
             return null;
-        };
+        LockInfo li = new LockInfo();
+        li.setToken(rs.getString("Token"));
+        li.setShared(rs.getBoolean("Shared"));
+        li.setDeep(rs.getBoolean("Deep"));
+        if (rs.getDate("Expires") == null) {
+            li.setTimeout(-1);
+        } else {
+            java.util.Date expires = new java.util.Date(rs.getTimestamp("Expires").getTime());
+            if (expires.getTime() <= new java.util.Date().getTime()) {
+                li.setTimeout(0);
+            } else
+                li.setTimeout((expires.getTime() - new java.util.Date().getTime()) / 1000);
+        }
+        li.setOwner(rs.getString("Owner"));
 
-        return readObjects(sql, elementReader, args);
+        if (li.getTimeout() != 0)
+            return li;
+        return null;
     }
 
     /**
@@ -262,11 +252,49 @@ public class DataAccess {
      * @throws ServerException in case of DB exception.
      */
     List<Property> readProperties(String sql, Object... args) throws ServerException {
-        ElementReader<Property> elementReader = rs -> Property.create(rs.getString("Namespace"),
+        return readObjects(sql, DataAccess::readProperty, args);
+    }
+
+    /**
+     * Reads property from the current row of the query against Properties table.
+     *
+     * @param rs ResultSet at the position.
+     * @return Property.
+     * @throws SQLException in case of DB exception.
+     */
+    static Property readProperty(ResultSet rs) throws SQLException {
+        return Property.create(rs.getString("Namespace"),
                 rs.getString("Name"),
                 rs.getString("PropVal"));
+    }
 
-        return readObjects(sql, elementReader, args);
+    /**
+     * Reads objects for the list of IDs. IDs are bound to the IN list of the query,
+     * at most {@link #IN_LIST_SIZE} IDs per query. IN lists are padded to a power of two, so only
+     * a few distinct statements are cached by the driver for any number of IDs.
+     *
+     * @param sql      Query with a single "IN (?)" list, like "... WHERE ItemID IN (?)".
+     * @param elReader Instance of {@link ElementReader}.
+     * @param ids      IDs to bind.
+     * @param <T>      Type of the object.
+     * @return List of objects associated with DB rows.
+     * @throws ServerException in case of DB errors.
+     */
+    <T> List<T> readObjectsByIds(String sql, ElementReader<T> elReader, List<Integer> ids) throws ServerException {
+        List<T> res = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += IN_LIST_SIZE) {
+            List<Integer> chunk = ids.subList(start, Math.min(ids.size(), start + IN_LIST_SIZE));
+            int size = Math.min(IN_LIST_SIZE, Integer.highestOneBit(chunk.size() * 2 - 1));
+            Object[] args = new Object[size];
+            StringBuilder inList = new StringBuilder("IN (");
+            for (int i = 0; i < size; i++) {
+                // Duplicated last ID does not change the result.
+                args[i] = chunk.get(Math.min(i, chunk.size() - 1));
+                inList.append(i == 0 ? "?" : ", ?");
+            }
+            res.addAll(readObjects(sql.replace("IN (?)", inList.append(")")), elReader, args));
+        }
+        return res;
     }
 
     /**
@@ -285,6 +313,8 @@ public class DataAccess {
 
     /**
      * Creates {@link HierarchyItemImpl} instance by path.
+     * Item is found in a single query, by name in the parent folder if the parent folder ID is cached
+     * or by joining all folders on the path otherwise.
      *
      * @param path Item relative path.
      * @return Instance of corresponding {@link HierarchyItemImpl} or null if item is not found.
@@ -292,37 +322,99 @@ public class DataAccess {
      */
     HierarchyItemImpl getHierarchyItem(String path) throws ServerException {
         if (path.equals("/")) {
-            return readItem("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength"
+            return readItem("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength,"
+                    + " DBMS_LOB.GETLENGTH(Content) AS ContentLength"
                     + " FROM Repository"
                     + " WHERE ID = 0", path, false);
-        } else {
-            int id = 0;
-            String[] names = path.split("/");
-            //decode parts
-            for (int i = 0; i < names.length; i++) {
-                names[i] = decode(names[i]);
+        }
+        List<String> names = getNames(path);
+        if (names.isEmpty()) {
+            return null;
+        }
+        String parentKey = toPathKey(names, names.size() - 1);
+        long generation = pathCache.getGeneration();
+        Integer parentId = names.size() == 1 ? Integer.valueOf(0) : pathCache.get(parentKey);
+        HierarchyItemImpl item = null;
+        boolean found = false;
+        if (parentId != null) {
+            // Parent row is returned even if there is no such child, no rows means the cached parent was deleted.
+            List<Optional<HierarchyItemImpl>> rows = readObjects("SELECT c.ID, c.Parent, c.ItemType, c.Name, c.Created,"
+                            + " c.Modified, c.LastChunkSaved, c.TotalContentLength, DBMS_LOB.GETLENGTH(c.Content) AS ContentLength"
+                            + " FROM Repository p"
+                            + " LEFT JOIN Repository c ON c.Parent = p.ID AND c.Name = ?"
+                            + " WHERE p.ID = ?",
+                    rs -> Optional.ofNullable(rs.getObject("ID") != null ? createItem(rs, path, false) : null),
+                    names.get(names.size() - 1), parentId);
+            if (!rows.isEmpty()) {
+                item = rows.get(0).orElse(null);
+                found = true;
+            } else {
+                pathCache.invalidate(parentKey);
+                generation = pathCache.getGeneration();
             }
-            int last = names.length - 1;
-            while (last > 0 && names[last].equals("")) last--;
-            // search for item by path
-
-            for (int i = 0; i < last; i++)
-                if (!names[i].equals("")) {
-                    Integer res = executeInt("SELECT ID FROM Repository"
-                            + " WHERE Name = ?"
-                            + " AND Parent = ?", names[i], id);
-                    if (res == null)
-                        return null;
-                    else
-                        id = res;
-                }
-            // get item properties
-            return readItem("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength"
-                    + " FROM Repository"
-                    + " WHERE Name = ?"
-                    + " AND Parent = ?", path, false, names[last], id);
+        }
+        if (!found) {
+            item = readItem(getPathQuery(names.size()), path, false, names.toArray());
+        }
+        if (item != null) {
+            if (names.size() > 1) {
+                pathCache.put(parentKey, item.getParentId(), generation);
+            }
+            if (item instanceof FolderImpl) {
+                pathCache.put(toPathKey(names, names.size()), item.getId(), generation);
+            }
+        }
+        return item;
+    }
 
+    // Builds query that finds item by the names of all folders on its path, one join per folder.
+    private static String getPathQuery(int depth) {
+        StringBuilder sql = new StringBuilder("SELECT r").append(depth).append(".ID, r").append(depth).append(".Parent, r")
+                .append(depth).append(".ItemType, r").append(depth).append(".Name, r").append(depth).append(".Created, r")
+                .append(depth).append(".Modified, r").append(depth).append(".LastChunkSaved, r").append(depth)
+                .append(".TotalContentLength, DBMS_LOB.GETLENGTH(r").append(depth)
+                .append(".Content) AS ContentLength FROM Repository r1");
+        for (int i = 2; i <= depth; i++) {
+            sql.append(", Repository r").append(i);
         }
+        sql.append(" WHERE r1.Parent = 0 AND r1.Name = ?");
+        for (int i = 2; i <= depth; i++) {
+            sql.append(" AND r").append(i).append(".Parent = r").append(i - 1).append(".ID AND r").append(i).append(".Name = ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Removes cached IDs of the item and all folders in its subtree. Must be called when item is deleted or moved.
+     * IDs are removed again when the transaction is committed or rolled back.
+     *
+     * @param path Item relative path.
+     */
+    void invalidatePath(String path) {
+        List<String> names = getNames(path);
+        String key = toPathKey(names, names.size());
+        pathCache.invalidate(key);
+        invalidatedPaths.add(key);
+    }
+
+    // Returns decoded names of the folders on the path and the name of the item.
+    private List<String> getNames(String path) {
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) {
+                names.add(decode(name));
+            }
+        }
+        return names;
+    }
+
+    // Builds cache key from the first names on the path, like /folder/subfolder.
+    private static String toPathKey(List<String> names, int count) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            key.append('/').append(names.get(i));
+        }
+        return key.toString();
     }
 
     /**
@@ -365,22 +457,26 @@ public class DataAccess {
      * @return List of object associated with DB row.
      * @throws ServerException in case of DB errors.
      */
-    private <T> List<T> readObjects(String sql, ElementReader<T> elReader, Object... args) throws ServerException {
+    <T> List<T> readObjects(String sql, ElementReader<T> elReader, Object... args) throws ServerException {
 
         List<T> res = new ArrayList<>();
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-
-            setParams(statement, args);
-
-            try (ResultSet result = statement.executeQuery()) {
-                while (result.next()) {
-                    T item = elReader.readItem(result);
-                    if (item != null)
-                        res.add(item);
+        ConnectionPool.PooledConnection connection = getConnection();
+        // Connection is shared by indexing threads.
+        synchronized (connection) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+
+                setParams(statement, args);
+
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        T item = elReader.readItem(result);
+                        if (item != null)
+                            res.add(item);
+                    }
                 }
+            } catch (SQLException ex) {
+                throw new ServerException(ex);
             }
-        } catch (SQLException ex) {
-            throw new ServerException(ex);
         }
 
         return res;
@@ -396,11 +492,42 @@ public class DataAccess {
      */
     void executeUpdate(String sql, Object... args) throws ServerException {
 
-        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
-            setParams(statement, args);
-            statement.executeUpdate();
-        } catch (SQLException ex) {
-            throw new ServerException(ex);
+        ConnectionPool.PooledConnection connection = getConnection();
+        synchronized (connection) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                setParams(statement, args);
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                throw new ServerException(ex);
+            }
+        }
+    }
+
+    /**
+     * Executes the same update for each set of parameters in batches.
+     *
+     * @param sql  Query to execute.
+     * @param rows Query parameters, one array per execution.
+     * @throws ServerException in case of DB errors.
+     */
+    void executeBatch(String sql, List<Object[]> rows) throws ServerException {
+        ConnectionPool.PooledConnection connection = getConnection();
+        synchronized (connection) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int count = 0;
+                for (Object[] row : rows) {
+                    setParams(statement, row);
+                    statement.addBatch();
+                    if (++count % BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                if (count % BATCH_SIZE != 0) {
+                    statement.executeBatch();
+                }
+            } catch (SQLException ex) {
+                throw new ServerException(ex);
+            }
         }
     }
 
@@ -456,7 +583,8 @@ public class DataAccess {
      */
     List<HierarchyItemImpl> getFiles() {
         try {
-            return readItems("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength"
+            return readItems("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength,"
+                    + " DBMS_LOB.GETLENGTH(Content) AS ContentLength"
                     + " FROM Repository"
                     + " WHERE Name <> 'Root'", "/", false);
         } catch (ServerException e) {
@@ -465,25 +593,33 @@ public class DataAccess {
     }
 
     /**
-     * Gets {@link HierarchyItem} from DB by id and specified path.
+     * Gets {@link HierarchyItem}s from DB by IDs. Paths of all items are built with one query
+     * that walks up the tree from each item.
      *
-     * @param id   File id.
-     * @param path Path of file.
-     * @return HierarchyItem.
+     * @param ids Item IDs.
+     * @return Items by ID. Items that are not found are omitted.
+     * @throws ServerException in case of DB errors.
      */
-    HierarchyItem getFile(int id, String path) {
-        HierarchyItem result = null;
-        try {
-            List<HierarchyItemImpl> hierarchyItems = readItems("SELECT ID, Parent, ItemType, Name, Created, Modified, LastChunkSaved, TotalContentLength"
-                    + " FROM Repository"
-                    + " WHERE id = ?", path, false, id);
-            if (hierarchyItems != null && !hierarchyItems.isEmpty()) {
-                result = hierarchyItems.get(0);
-
+    Map<Integer, HierarchyItemImpl> getItems(List<Integer> ids) throws ServerException {
+        Map<Integer, HierarchyItemImpl> result = new HashMap<>();
+        readObjectsByIds("SELECT h.ID, h.Parent, h.ItemType, h.Name, h.Created, h.Modified, h.LastChunkSaved,"
+                + " h.TotalContentLength, DBMS_LOB.GETLENGTH(h.Content) AS ContentLength, a.Path"
+                + " FROM (SELECT CONNECT_BY_ROOT ID AS ItemID, SYS_CONNECT_BY_PATH(Name, '/') AS Path"
+                + " FROM Repository"
+                + " WHERE Parent = 0"
+                + " START WITH ID IN (?) CONNECT BY ID = PRIOR Parent AND ID <> 0) a"
+                + " JOIN Repository h ON h.ID = a.ItemID", rs -> {
+            // Path lists names from the item up to the folder in the root.
+            String[] names = rs.getString("Path").split("/");
+            StringBuilder parentPath = new StringBuilder("/");
+            for (int i = names.length - 1; i > 1; i--) {
+                parentPath.append(encode(names[i])).append('/');
             }
-        } catch (ServerException e) {
-            engine.getLogger().logError(e.getMessage(), e);
-        }
+            HierarchyItemImpl item = createItem(rs, parentPath.toString(), true);
+            if (item != null)
+                result.put(item.getId(), item);
+            return null;
+        }, ids);
         return result;
     }
 }
@@ -14,6 +14,7 @@ import com.ithit.webdav.server.resumableupload.UploadProgress;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.util.Collections;
@@ -27,6 +28,7 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
 
     private final long lastChunkSaved;
     private final long totalContentLength;
+    private final long contentLength;
     private String snippet;
 
     /**
@@ -40,13 +42,15 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
      * @param modified           Modification time of the hierarchy item.
      * @param lastChunkSaved     Last byte saved.
      * @param totalContentLength Length of the file.
+     * @param contentLength      Length of the content stored in DB, less than the length of the file while upload is in progress.
      * @param engine             Instance of current {@link WebDavEngine}
      */
-    FileImpl(int id, int parentId, String name, String path, long created, long modified, long lastChunkSaved, long totalContentLength, WebDavEngine engine) {
+    FileImpl(int id, int parentId, String name, String path, long created, long modified, long lastChunkSaved, long totalContentLength, long contentLength, WebDavEngine engine) {
         super(id, parentId, name, path, created, modified, engine);
 
         this.lastChunkSaved = lastChunkSaved;
         this.totalContentLength = totalContentLength;
+        this.contentLength = contentLength;
     }
 
     /**
@@ -113,7 +117,7 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
     @Override
     protected HierarchyItemImpl createItemCopy(int id, int parentId, String name, String path,
                                                long created, long modified, WebDavEngine engine) {
-        return new FileImpl(id, parentId, name, path, created, modified, lastChunkSaved, totalContentLength, engine);
+        return new FileImpl(id, parentId, name, path, created, modified, lastChunkSaved, totalContentLength, contentLength, engine);
     }
 
     /**
@@ -157,12 +161,7 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
      * @throws ServerException In case of an error.
      */
     public long getContentLength() throws ServerException {
-        try {
-            Blob blob = getDataAccess().executeScalar("SELECT Content FROM Repository WHERE ID = ?", id);
-            return blob == null ? 0 : blob.length();
-        } catch (SQLException ex) {
-            throw new ServerException(ex);
-        }
+        return contentLength;
     }
 
     @Override
@@ -220,27 +219,27 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
     public void read(OutputStream output, long startIndex, long count) throws ServerException {
         try {
             Blob blob = getDataAccess().executeScalar("SELECT Content FROM Repository WHERE ID = ?", id);
-            if (blob != null) {
-                try (InputStream stream = blob.getBinaryStream()) {
-                    int bufSize = 1048576; // 1Mb
-                    byte[] buf = new byte[bufSize];
-                    long retval;
-                    stream.skip(startIndex);
-                    while ((retval = stream.read(buf)) > 0) {
-                        try {
-                            if (retval > count) {
-                                retval = count;
-                            }
-                            output.write(buf, 0, (int) retval);
-                        } catch (IOException e) {
-                            getEngine().getLogger().logDebug("Remote host closed connection");
-                            return;
-                        }
-
-                        startIndex += retval;
-                        count -= retval;
+            if (blob == null)
+                return;
+            count = Math.min(count, blob.length() - startIndex);
+            if (count <= 0)
+                return;
+            byte[] buf = BufferPool.getInstance().acquire();
+            int readSize = Math.min(buf.length, WebDavServlet.getLobReadSize());
+            // Only the requested range of the LOB is transferred from DB.
+            try (InputStream stream = blob.getBinaryStream(startIndex + 1, count)) {
+                int read;
+                while (count > 0 && (read = stream.read(buf, 0, (int) Math.min(readSize, count))) > 0) {
+                    try {
+                        output.write(buf, 0, read);
+                    } catch (IOException e) {
+                        getEngine().getLogger().logDebug("Remote host closed connection");
+                        return;
                     }
+                    count -= read;
                 }
+            } finally {
+                BufferPool.getInstance().release(buf);
             }
         } catch (SQLException | IOException e) {
             throw new ServerException(e);
@@ -307,54 +306,77 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
                     totalFileSize >= 0 ? totalFileSize : 0,
                     getId());
             OutputStream os = null;
-            long totalSaved = 0;
+            long firstIndex = startIndex;
+            byte[] buf = BufferPool.getInstance().acquire();
             try {
                 int read;
-                long lastStartIndex = startIndex;
-                long lastUpdateTime = new Date().getTime();
-                int bufSize = 1048576; // 1Mb
-                final long updateInterval = 1000;
-                byte[] buf = new byte[bufSize];
+                long checkpointSize = WebDavServlet.getUploadCheckpointSize();
+                long checkpointInterval = WebDavServlet.getUploadCheckpointInterval();
+                long lastCheckpointIndex = startIndex;
+                long lastCheckpointTime = System.currentTimeMillis();
                 Blob bb = getDataAccess().executeScalar("select content from Repository where id = ? for update", getId());
                 os = bb.setBinaryStream(startIndex + 1);
-                while ((read = content.read(buf)) > 0) {
+                // Content is written to the LOB with the whole buffer at a time.
+                while ((read = fill(content, buf)) > 0) {
                     os.write(buf, 0, read);
                     startIndex += read;
-                    //commit every megabate or every second so upload progress is visible
-                    //and we don't lose more than 1MB if something happens.
-                    if (startIndex - lastStartIndex > bufSize || (new Date().getTime() - lastUpdateTime) > updateInterval) {
+                    // Commit at checkpoints so upload progress is visible
+                    // and the upload can be resumed from the last checkpoint if something happens.
+                    if (startIndex - lastCheckpointIndex >= checkpointSize
+                            || System.currentTimeMillis() - lastCheckpointTime >= checkpointInterval) {
                         os.close();
                         os = null;
-                        getDataAccess().executeUpdate("UPDATE Repository SET LastChunkSaved = CURRENT_TIMESTAMP  WHERE ID = ?", getId());
+                        getDataAccess().executeUpdate("UPDATE Repository SET LastChunkSaved = CURRENT_TIMESTAMP WHERE ID = ?", getId());
                         getDataAccess().commit();
-                        totalSaved += startIndex - lastStartIndex;
-                        lastStartIndex = startIndex;
-                        lastUpdateTime = new Date().getTime();
+                        lastCheckpointIndex = startIndex;
+                        lastCheckpointTime = System.currentTimeMillis();
+                        // LOB locator cannot be used after commit, the row is selected for update again.
                         bb = getDataAccess().executeScalar("select content from Repository where id = ? for update", getId());
                         os = bb.setBinaryStream(startIndex + 1);
-                    } else {
-                        totalSaved += startIndex - lastStartIndex;
                     }
                 }
                 os.close();
                 os = null;
+                if (totalFileSize < 0) {
+                    // Length of the content is known only when the whole content is read.
+                    getDataAccess().executeUpdate("UPDATE Repository SET TotalContentLength = ? WHERE ID = ?", startIndex, getId());
+                }
                 getDataAccess().commit();
             } finally {
+                BufferPool.getInstance().release(buf);
                 if (os != null)
                     os.close();
             }
+            getEngine().getQuotaService().bytesWritten(startIndex - firstIndex);
             getEngine().getWebSocketServer().notifyUpdated(getPath(), getWebSocketID());
             try {
                 getEngine().getSearchFacade().getIndexer().indexFile(getName(), getId(), getId(), this);
             } catch (Exception ex) {
                 getEngine().getLogger().logError("Errors during indexing.", ex);
             }
-            return totalSaved;
+            return startIndex - firstIndex;
         } catch (SQLException ex) {
             throw new ServerException(ex);
         }
     }
 
+    /**
+     * Reads from the stream until the buffer is full or the stream ends.
+     *
+     * @param content Stream to read.
+     * @param buf     Buffer to fill.
+     * @return Number of bytes read, 0 if the stream has ended.
+     * @throws IOException in case of read errors.
+     */
+    private static int fill(InputStream content, byte[] buf) throws IOException {
+        int total = 0;
+        int read;
+        while (total < buf.length && (read = content.read(buf, total, buf.length - total)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
     @Override
     public void moveTo(Folder folder, String destName)
             throws LockedException, ConflictException, MultistatusException, ServerException {
@@ -442,7 +464,8 @@ public class FileImpl extends HierarchyItemImpl implements File, Lock, Resumable
      * @throws ServerException in case of an error.
      */
     public long getBytesUploaded() throws ServerException {
-        return getContentLength();
+        BigDecimal length = getDataAccess().executeScalar("SELECT DBMS_LOB.GETLENGTH(Content) FROM Repository WHERE ID = ?", id);
+        return length == null ? 0 : length.longValue();
     }
 
     /**
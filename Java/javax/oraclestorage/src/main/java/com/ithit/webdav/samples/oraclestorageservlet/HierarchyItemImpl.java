@@ -33,6 +33,8 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
     private final int parentId;
     private final WebDavEngine engine;
     private String name;
+    private List<Property> properties;
+    private List<LockInfo> activeLocks;
 
     /**
      * Initializes a new instance of the {@link HierarchyItemImpl} class.
@@ -102,7 +104,8 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
 
         String parentPath = path.substring(0, path.lastIndexOf('/'));
 
-        FolderImpl parent = (FolderImpl) getDataAccess().readItem("SELECT ID, Parent, Name, Created, Modified, ItemType, LastChunkSaved, TotalContentLength"
+        FolderImpl parent = (FolderImpl) getDataAccess().readItem("SELECT ID, Parent, Name, Created, Modified, ItemType, LastChunkSaved, TotalContentLength,"
+                + " DBMS_LOB.GETLENGTH(Content) AS ContentLength"
                 + " FROM Repository"
                 + " WHERE ID = ?", parentPath, false, parentId);
 
@@ -112,6 +115,15 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         return parent;
     }
 
+    /**
+     * Returns id of the parent folder in DB.
+     *
+     * @return Id of the parent folder.
+     */
+    int getParentId() {
+        return parentId;
+    }
+
     /**
      * Returns id associated with this {@link HierarchyItemImpl}.
      *
@@ -187,7 +199,7 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
      */
     public List<Property> getProperties(Property[] props) throws ServerException {
 
-        List<Property> l = getDataAccess().readProperties("SELECT Name, Namespace, PropVal"
+        List<Property> l = properties != null ? properties : getDataAccess().readProperties("SELECT Name, Namespace, PropVal"
                 + " FROM Properties"
                 + " WHERE ItemID = ?", getId());
 
@@ -275,10 +287,23 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
                 removeProperty(p.getName(), p.getNamespace());
             }
 
+        properties = null;
         updateModified();
         getEngine().getWebSocketServer().notifyUpdated(getPath(), getWebSocketID());
     }
 
+    /**
+     * Sets properties and active locks of this item read together with other items,
+     * so they are not read from DB again during this request.
+     *
+     * @param properties  All properties of this item.
+     * @param activeLocks All active locks of this item including deep locks of the parent folders.
+     */
+    void setPrefetched(List<Property> properties, List<LockInfo> activeLocks) {
+        this.properties = properties;
+        this.activeLocks = activeLocks;
+    }
+
     /**
      * Set property on the {@link HierarchyItemImpl} and stores its value in Properties table.
      *
@@ -423,11 +448,19 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
      * @throws ServerException in case of errors.
      */
     boolean clientHasToken() throws ServerException {
+        return clientHasToken(getActiveLocks(), DavContext.currentRequest().getClientLockTokens());
+    }
 
-        List<LockInfo> itemLocks = getActiveLocks();
+    /**
+     * Check whether client is the owner of the item locks.
+     *
+     * @param itemLocks        Active locks of the item.
+     * @param clientLockTokens Lock tokens provided by client.
+     * @return True if item is not locked or client provided one of the lock tokens, false otherwise.
+     */
+    static boolean clientHasToken(List<LockInfo> itemLocks, List<String> clientLockTokens) {
         if (itemLocks.isEmpty())
             return true;
-        List<String> clientLockTokens = DavContext.currentRequest().getClientLockTokens();
         for (String clientLockToken : clientLockTokens)
             for (LockInfo itemLock : itemLocks)
                 if (clientLockToken.equals(itemLock.getToken()))
@@ -442,6 +475,7 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
      * @throws ServerException in case of DB error.
      */
     void deleteThisItem() throws ServerException {
+        getDataAccess().invalidatePath(getPath());
         getDataAccess().executeUpdate("DELETE FROM Locks WHERE ItemID = ?", id);
         getDataAccess().executeUpdate("DELETE FROM Properties WHERE ItemID = ?", id);
         getDataAccess().executeUpdate("DELETE FROM Repository WHERE ID = ?", id);
@@ -458,36 +492,90 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
      * @throws ServerException In case of an error.
      */
     public List<LockInfo> getActiveLocks() throws ServerException {
-        int itemId = getId();
+        if (activeLocks != null)
+            return activeLocks;
+        // Locks of the item go first, followed by deep locks of the parent folders from the nearest one.
+        return getDataAccess().readLocks("SELECT l.Token, l.Shared, l.Deep, l.Expires, l.Owner"
+                + " FROM (SELECT ID, LEVEL AS Lvl FROM Repository"
+                + " START WITH ID = ? CONNECT BY ID = PRIOR Parent AND ID > 0) a"
+                + " JOIN Locks l ON l.ItemID = a.ID"
+                + " WHERE a.Lvl = 1 OR l.Deep = ?"
+                + " ORDER BY a.Lvl", getId(), true);
+    }
 
-        ArrayList<LockInfo> l = new ArrayList<>(getLocks(getId(), false)); // get all locks
-        while (true) {
-            Integer res = getDataAccess().executeInt("SELECT Parent FROM Repository WHERE ID = ?", itemId);
-            if (res == null || res <= 0)
-                break;
-            itemId = res;
-            l.addAll(getLocks(itemId, true));  // get only deep locks
+    /**
+     * Gets active locks of all items in the subtree of this item, including deep locks of the parent folders.
+     * All items of the subtree are read with one query, deep locks are passed down to the children in memory.
+     *
+     * @return Active locks by item path, parents go before their children. This item is not included.
+     * @throws ServerException in case of DB errors.
+     */
+    Map<String, List<LockInfo>> getSubtreeLocks() throws ServerException {
+        Map<Integer, SubtreeItem> items = new LinkedHashMap<>();
+        getDataAccess().readObjects("SELECT r.ID, r.Parent, r.ItemType, r.Path, l.Token, l.Shared, l.Deep, l.Expires, l.Owner"
+                + " FROM (SELECT ID, Parent, ItemType, LEVEL AS Lvl, SYS_CONNECT_BY_PATH(Name, '/') AS Path FROM Repository"
+                + " START WITH Parent = ? AND ID <> 0 CONNECT BY PRIOR ID = Parent AND ID <> 0) r"
+                + " LEFT JOIN Locks l ON l.ItemID = r.ID"
+                + " ORDER BY r.Lvl, r.ID", rs -> {
+            SubtreeItem item = items.computeIfAbsent(rs.getInt("ID"), x -> new SubtreeItem());
+            item.parent = rs.getInt("Parent");
+            item.path = rs.getString("Path");
+            item.folder = rs.getByte("ItemType") == ItemType.FOLDER;
+            LockInfo lock = DataAccess.readLock(rs);
+            if (lock != null)
+                item.locks.add(lock);
+            return null;
+        }, getId());
+
+        // Deep locks inherited by the children of each folder, locks of the root folder are not inherited.
+        Map<Integer, List<LockInfo>> inherited = new HashMap<>();
+        List<LockInfo> rootInherited = new ArrayList<>();
+        if (getId() > 0)
+            for (LockInfo lock : getActiveLocks())
+                if (lock.isDeep())
+                    rootInherited.add(lock);
+        inherited.put(getId(), rootInherited);
+        Map<String, List<LockInfo>> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, SubtreeItem> entry : items.entrySet()) {
+            SubtreeItem item = entry.getValue();
+            List<LockInfo> parentLocks = inherited.getOrDefault(item.parent, Collections.emptyList());
+            List<LockInfo> activeLocks = parentLocks;
+            List<LockInfo> childLocks = parentLocks;
+            if (!item.locks.isEmpty()) {
+                activeLocks = new ArrayList<>(item.locks);
+                activeLocks.addAll(parentLocks);
+                childLocks = new ArrayList<>();
+                for (LockInfo lock : item.locks)
+                    if (lock.isDeep())
+                        childLocks.add(lock);
+                childLocks.addAll(parentLocks);
+            }
+            inherited.put(entry.getKey(), childLocks);
+            result.put(getDescendantPath(item.path, item.folder), activeLocks);
         }
-
-        return l;
+        return result;
     }
 
     /**
-     * Loads locks from Oracle DB.
+     * Builds path of the item in the subtree of this item.
      *
-     * @param itemId   Unique item id.
-     * @param onlyDeep Determines whether to load deep locks.
-     * @return List of {@link LockInfo}.
-     * @throws ServerException in case of DB errors.
+     * @param names  Names of the items from the child of this item down to the item separated with '/', starting with '/'.
+     * @param folder Indicates whether the item is a folder, folder path ends with '/'.
+     * @return Encoded item path.
+     * @throws ServerException in case of errors.
      */
-    private List<LockInfo> getLocks(int itemId, boolean onlyDeep) throws ServerException {
-        if (onlyDeep)
-            return getDataAccess().readLocks("SELECT Token, Shared, Deep, Expires, Owner"
-                    + " FROM Locks"
-                    + " WHERE ItemID = ?"
-                    + " AND Deep = ?", itemId, true);
-        else
-            return getDataAccess().readLocks("SELECT Token, Shared, Deep, Expires, Owner FROM Locks WHERE ItemID = ?", itemId);
+    String getDescendantPath(String names, boolean folder) throws ServerException {
+        StringBuilder result = new StringBuilder(getPath());
+        for (String name : names.substring(1).split("/")) {
+            if (result.charAt(result.length() - 1) != '/') {
+                result.append('/');
+            }
+            result.append(getDataAccess().encode(name));
+        }
+        if (folder) {
+            result.append('/');
+        }
+        return result.toString();
     }
 
     /**
@@ -498,47 +586,49 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
      * @throws ServerException in case of DB errors.
      */
     private boolean itemHasLock(boolean skipShared) throws ServerException {
-        List<LockInfo> locks = getActiveLocks();
+        return hasLock(getActiveLocks(), skipShared);
+    }
+
+    /**
+     * Checks if there is items on the lock.
+     *
+     * @param locks      Active locks of the item.
+     * @param skipShared Indicates whether to skip shared locks.
+     * @return True if there are locks on the item.
+     */
+    private static boolean hasLock(List<LockInfo> locks, boolean skipShared) {
         if (locks.isEmpty())
             return false;
         return !(skipShared && locks.get(0).isShared());
     }
 
     /**
-     * Walks the {@link HierarchyItemImpl} tree to check for locked items.
+     * Checks the subtree of this folder for locked items.
      *
-     * @param root       Root of the tree to walk.
      * @param skipShared Indicates whether to skip shared {@link HierarchyItemImpl}.
-     * @throws ServerException in case of errors.
+     * @throws MultistatusException with the locked items.
+     * @throws ServerException      in case of errors.
      */
-    private void checkNoItemsLocked(HierarchyItemImpl root, boolean skipShared)
+    private void checkNoItemsLocked(boolean skipShared)
             throws ServerException, MultistatusException {
 
         MultistatusException mr = new MultistatusException();
-        checkNoItemsLocked(mr, root, skipShared);
+        for (Map.Entry<String, List<LockInfo>> entry : getSubtreeLocks().entrySet()) {
+            if (hasLock(entry.getValue(), skipShared))
+                mr.addResponse(entry.getKey(), WebDavStatus.LOCKED);
+        }
         if (mr.getResponses().length > 0)
             throw mr;
     }
 
     /**
-     * Walks the {@link HierarchyItemImpl} tree to check for locked items.
-     *
-     * @param mr         Aggregate {@link MultistatusException} response.
-     * @param root       Root of the tree to walk.
-     * @param skipShared Indicates whether to skip shared {@link HierarchyItemImpl}.
-     * @throws ServerException in case of errors.
+     * Item of the subtree read by {@link #getSubtreeLocks()}.
      */
-    private void checkNoItemsLocked(MultistatusException mr, HierarchyItemImpl root, boolean skipShared)
-            throws ServerException {
-
-        FolderImpl folder = root instanceof FolderImpl ? (FolderImpl) root : null;
-        if (folder != null)
-            for (HierarchyItem child : folder.getChildren(Collections.emptyList(), null, null, null).getPage()) {
-                if (((HierarchyItemImpl)child).itemHasLock(skipShared))
-                    mr.addResponse(child.getPath(), WebDavStatus.LOCKED);
-                checkNoItemsLocked(mr, ((HierarchyItemImpl)child), skipShared);
-            }
-
+    private static final class SubtreeItem {
+        private final List<LockInfo> locks = new ArrayList<>();
+        private int parent;
+        private String path;
+        private boolean folder;
     }
 
     /**
@@ -563,8 +653,8 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         if (itemHasLock(shared))
             throw new LockedException();
 
-        if (deep) { // check if no items are locked in this subtree
-            checkNoItemsLocked(this, shared);
+        if (deep && this instanceof Folder) { // check if no items are locked in this subtree
+            checkNoItemsLocked(shared);
         }
 
         String token = UUID.randomUUID().toString();
@@ -576,6 +666,7 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
         getDataAccess().executeUpdate("INSERT INTO Locks (ItemID,Token,Shared,Deep,Expires,Owner)"
                         + " VALUES(?, ?, ?, ?, ?, ?)",
                 getId(), token, shared, deep, expires, owner);
+        activeLocks = null;
         getEngine().getWebSocketServer().notifyLocked(getPath(), getWebSocketID());
         return new LockResult(token, timeout);
     }
@@ -607,6 +698,7 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
 
         getDataAccess().executeUpdate("UPDATE Locks SET Expires = ? WHERE Token = ?",
                 expires, token);
+        activeLocks = null;
         getEngine().getWebSocketServer().notifyLocked(getPath(), getWebSocketID());
         return new RefreshLockResult(lockInfo.isShared(), lockInfo.isDeep(),
                 timeout, lockInfo.getOwner());
@@ -637,6 +729,7 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
 
 
         getDataAccess().executeUpdate("DELETE FROM Locks WHERE Token = ?", lockToken);
+        activeLocks = null;
         getEngine().getWebSocketServer().notifyUnlocked(getPath(), getWebSocketID());
     }
 
@@ -745,6 +838,7 @@ public abstract class HierarchyItemImpl implements HierarchyItem, Lock {
      * @throws ServerException in case of DB errors.
      */
     void moveThisItem(FolderImpl destFolder, String destName, FolderImpl parent) throws ServerException {
+        getDataAccess().invalidatePath(getPath());
 
         getDataAccess().executeUpdate("UPDATE Repository SET"
                 + " Name = ?"
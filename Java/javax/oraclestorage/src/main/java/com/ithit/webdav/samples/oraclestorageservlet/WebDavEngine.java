@@ -16,6 +16,7 @@ public class WebDavEngine extends Engine {
     private final String license;
     private DataAccess dataAccess;
     private SearchFacade searchFacade;
+    private QuotaService quotaService;
 
     /**
      * Initializes a new instance of the WebDavEngine class.
@@ -108,4 +109,22 @@ public class WebDavEngine extends Engine {
     void setSearchFacade(SearchFacade searchFacade) {
         this.searchFacade = searchFacade;
     }
+
+    /**
+     * Returns QuotaService instance
+     *
+     * @return QuotaService instance
+     */
+    QuotaService getQuotaService() {
+        return quotaService;
+    }
+
+    /**
+     * Sets QuotaService instance
+     *
+     * @param quotaService QuotaService instance
+     */
+    void setQuotaService(QuotaService quotaService) {
+        this.quotaService = quotaService;
+    }
 }
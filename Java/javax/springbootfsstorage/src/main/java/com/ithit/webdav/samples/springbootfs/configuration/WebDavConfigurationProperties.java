@@ -16,4 +16,5 @@ public class WebDavConfigurationProperties {
     String rootFolder;
     String rootContext;
     String rootWebSocket;
+    int metadataCacheSize;
 }
@@ -1,7 +1,6 @@
 package com.ithit.webdav.samples.springbootfs.impl;
 
 import com.ithit.webdav.integration.extendedattributes.ExtendedAttributesExtension;
-import com.ithit.webdav.integration.utils.SerializationUtils;
 import com.ithit.webdav.server.*;
 import com.ithit.webdav.server.exceptions.ConflictException;
 import com.ithit.webdav.server.exceptions.LockedException;
@@ -28,8 +27,6 @@ import java.util.Objects;
 final class FileImpl extends HierarchyItemImpl implements File, Lock,
         ResumableUpload, UploadProgress {
 
-    private static final int BUFFER_SIZE = 1048576; // 1 Mb
-
     private String snippet;
 
     private final OpenOption[] allowedOpenFileOptions;
@@ -232,7 +229,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
     @Override
     public void read(OutputStream out, long startIndex, long count) throws ServerException {
         Path fullPath = this.getFullPath();
-        byte[] buf = new byte[BUFFER_SIZE];
+        byte[] buf = BufferPool.getInstance().acquire();
         int retVal;
         try (InputStream in = Files.newInputStream(fullPath)) {
             in.skip(startIndex);
@@ -247,6 +244,8 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             }
         } catch (IOException x) {
             throw new ServerException(x);
+        } finally {
+            BufferPool.getInstance().release(buf);
         }
     }
 
@@ -275,7 +274,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             writer.position(startIndex);
         }
         incrementSerialNumber();
-        byte[] inputBuffer = new byte[BUFFER_SIZE];
+        byte[] inputBuffer = BufferPool.getInstance().acquire();
         long totalWrittenBytes = startIndex;
         int readBytes;
         try {
@@ -294,6 +293,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
+            BufferPool.getInstance().release(inputBuffer);
             writer.close();
         }
         getEngine().getWebSocketServer().notifyUpdated(getContextAwarePath(), getWebSocketID());
@@ -307,15 +307,14 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             if (!Objects.equals(sn, "0")) {
                 serialNumber.setValue(String.valueOf((Integer.parseInt(sn) + 1)));
             }
-            ExtendedAttributesExtension.setExtendedAttribute(getFullPath().toString(), "SerialNumber", SerializationUtils.serialize(Collections.singletonList(serialNumber)));
+            setAttributeList("SerialNumber", Collections.singletonList(serialNumber));
         } catch (Exception ex) {
             getEngine().getLogger().logError("Cannot update serial number.", ex);
         }
     }
 
     private String getSerialNumber() throws ServerException {
-        String serialJson = ExtendedAttributesExtension.getExtendedAttribute(getFullPath().toString(), "SerialNumber");
-        List<Property> properties = SerializationUtils.deserializeList(Property.class, serialJson);
+        List<Property> properties = getAttributeList("SerialNumber", Property.class);
         if (properties.size() == 1) {
             return properties.get(0).getXmlValueRaw();
         }
@@ -331,6 +330,8 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         } catch (IOException e) {
             getEngine().getLogger().logError("Tried to delete file in use.", e);
             throw new ServerException(e);
+        } finally {
+            getEngine().getMetadataCache().invalidateTree(getFullPath());
         }
         getEngine().getWebSocketServer().notifyDeleted(getPath(), getWebSocketID());
         try {
@@ -358,6 +359,7 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
         if (ExtendedAttributesExtension.hasExtendedAttribute(newPath.toString(), activeLocksAttribute)) {
             ExtendedAttributesExtension.deleteExtendedAttribute(newPath.toString(), activeLocksAttribute);
         }
+        getEngine().getMetadataCache().invalidateTree(newPath);
         try {
             String currentPath = ((FolderImpl) folder).getContextAwarePath() + encode(destName);
             getEngine().getWebSocketServer().notifyCreated(folder.getPath() + encode(destName), getWebSocketID());
@@ -381,12 +383,15 @@ final class FileImpl extends HierarchyItemImpl implements File, Lock,
             Files.move(getFullPath(), newPath, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             throw new ServerException(e);
+        } finally {
+            getEngine().getMetadataCache().invalidateTree(getFullPath());
         }
         setName(destName);
         // Locks should not be copied, delete them
         if (ExtendedAttributesExtension.hasExtendedAttribute(newPath.toString(), activeLocksAttribute)) {
             ExtendedAttributesExtension.deleteExtendedAttribute(newPath.toString(), activeLocksAttribute);
         }
+        getEngine().getMetadataCache().invalidateTree(newPath);
         this.newPath = newPath;
         incrementMetadataEtag();
         try {
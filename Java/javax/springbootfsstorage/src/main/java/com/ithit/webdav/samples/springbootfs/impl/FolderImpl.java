@@ -185,6 +185,8 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
             FileUtils.deleteDirectory(getFullPath().toFile());
         } catch (IOException e) {
             throw new ServerException(e);
+        } finally {
+            getEngine().getMetadataCache().invalidateTree(getFullPath());
         }
         getEngine().getWebSocketServer().notifyDeleted(getPath(), getWebSocketID());
     }
@@ -205,6 +207,7 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
             Path sourcePath = this.getFullPath();
             Path destinationFullPath = Paths.get(destinationFolder, destName);
             FileUtils.copyDirectory(sourcePath.toFile(), destinationFullPath.toFile());
+            getEngine().getMetadataCache().invalidateTree(destinationFullPath);
             addIndex(destinationFullPath, ((FolderImpl) folder).getContextAwarePath() + destName, destName);
         } catch (IOException e) {
             throw new ServerException(e);
@@ -299,6 +302,8 @@ final class FolderImpl extends HierarchyItemImpl implements Folder, Search, Quot
         try {
             removeIndex(getFullPath(), this);
             FileUtils.moveDirectory(sourcePath.toFile(), destinationFullPath.toFile());
+            getEngine().getMetadataCache().invalidateTree(sourcePath);
+            getEngine().getMetadataCache().invalidateTree(destinationFullPath);
             addIndex(destinationFullPath, ((FolderImpl) folder).getContextAwarePath() + destName, destName);
         } catch (IOException e) {
             throw new ServerException(e);
@@ -0,0 +1,150 @@
+package com.ithit.webdav.samples.springbootfs.impl;
+
+import com.ithit.webdav.integration.extendedattributes.ExtendedAttributesExtension;
+import com.ithit.webdav.integration.utils.SerializationUtils;
+import com.ithit.webdav.server.exceptions.ServerException;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the item metadata stored in extended attributes (custom properties, locks, ETags).
+ * Entries are keyed by the full path of the item and are valid only while the item modification time
+ * is the same as when the attribute was read. Attributes written by this server are invalidated on write,
+ * so the next read picks up the new value. Attribute values are kept serialized, so the elements returned
+ * to one caller are never shared with the cache or with the other callers.
+ */
+public final class MetadataCache {
+
+    public static final int DEFAULT_SIZE = 10000;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long version;
+
+    /**
+     * Creates instance of {@link MetadataCache}.
+     *
+     * @param maxEntries Maximum number of items to keep metadata for. Least recently used items are evicted first.
+     */
+    public MetadataCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns list stored in the extended attribute of the item. Reads the attribute only if it is not cached
+     * or cached value was read for the other modification time of the item. The list is deserialized on each
+     * call, so both the list and its elements may be modified by the caller.
+     *
+     * @param path      Full path of the item in the file system.
+     * @param modified  Modification time of the item.
+     * @param attribute Extended attribute name.
+     * @param type      Type of the list elements.
+     * @return New list of new elements.
+     * @throws ServerException in case of reading exception.
+     */
+    <T> List<T> getList(Path path, long modified, String attribute, Class<T> type) throws ServerException {
+        String json = getJson(path, modified, attribute);
+        return new ArrayList<>(SerializationUtils.deserializeList(type, json));
+    }
+
+    private String getJson(Path path, long modified, String attribute) throws ServerException {
+        String key = toKey(path);
+        long loadVersion;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.modified == modified && entry.attributes.containsKey(attribute)) {
+                hits.incrementAndGet();
+                return entry.attributes.get(attribute);
+            }
+            loadVersion = version;
+        }
+        misses.incrementAndGet();
+        String json = ExtendedAttributesExtension.getExtendedAttribute(path.toString(), attribute);
+        synchronized (this) {
+            // Attribute may have been changed while we were reading it, do not cache the stale value then.
+            if (loadVersion == version) {
+                Entry entry = entries.get(key);
+                if (entry == null || entry.modified != modified) {
+                    entry = new Entry(modified);
+                    entries.put(key, entry);
+                }
+                entry.attributes.put(attribute, json);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Removes cached value of the attribute. Must be called after the attribute is changed.
+     *
+     * @param path      Full path of the item in the file system.
+     * @param attribute Extended attribute name.
+     */
+    synchronized void invalidate(Path path, String attribute) {
+        version++;
+        Entry entry = entries.get(toKey(path));
+        if (entry != null) {
+            entry.attributes.remove(attribute);
+        }
+    }
+
+    /**
+     * Removes cached metadata of the item and all items in its subtree.
+     * Must be called when item is deleted, moved or overwritten.
+     *
+     * @param path Full path of the item in the file system.
+     */
+    synchronized void invalidateTree(Path path) {
+        version++;
+        String key = toKey(path);
+        String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+        entries.keySet().removeIf(x -> x.equals(key) || x.startsWith(prefix));
+    }
+
+    /**
+     * Returns number of metadata reads served from cache.
+     *
+     * @return Number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns number of metadata reads that required reading extended attributes.
+     *
+     * @return Number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Metadata cache: " + entries.size() + " items, " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+
+    private static String toKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Serialized attributes of a single item.
+     */
+    private static final class Entry {
+        private final long modified;
+        private final Map<String, String> attributes = new HashMap<>();
+
+        private Entry(long modified) {
+            this.modified = modified;
+        }
+    }
+}
@@ -221,9 +221,8 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock, Res
         try {
             Blob blob = getDataAccess().executeScalar("SELECT Content FROM Repository WHERE ID = ?", id);
             if (blob != null) {
+                byte[] buf = BufferPool.getInstance().acquire();
                 try (InputStream stream = blob.getBinaryStream()) {
-                    int bufSize = 1048576; // 1Mb
-                    byte[] buf = new byte[bufSize];
                     long retval;
                     stream.skip(startIndex);
                     while ((retval = stream.read(buf)) > 0) {
@@ -240,6 +239,8 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock, Res
                         startIndex += retval;
                         count -= retval;
                     }
+                } finally {
+                    BufferPool.getInstance().release(buf);
                 }
             }
         } catch (SQLException | IOException e) {
@@ -308,13 +309,13 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock, Res
                     getId());
             OutputStream os = null;
             long totalSaved = 0;
+            byte[] buf = BufferPool.getInstance().acquire();
             try {
                 int read;
                 long lastStartIndex = startIndex;
                 long lastUpdateTime = new Date().getTime();
-                int bufSize = 1048576; // 1Mb
+                int bufSize = buf.length;
                 final long updateInterval = 1000;
-                byte[] buf = new byte[bufSize];
                 Blob bb = getDataAccess().executeScalar("select content from Repository where id = ? for update", getId());
                 os = bb.setBinaryStream(startIndex + 1);
                 while ((read = content.read(buf)) > 0) {
@@ -340,6 +341,7 @@ public final class FileImpl extends HierarchyItemImpl implements File, Lock, Res
                 os = null;
                 getDataAccess().commit();
             } finally {
+                BufferPool.getInstance().release(buf);
                 if (os != null)
                     os.close();
             }
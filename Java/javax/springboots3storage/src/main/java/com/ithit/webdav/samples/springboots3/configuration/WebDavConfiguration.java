@@ -112,7 +112,8 @@ public class WebDavConfiguration extends WebMvcConfigurationSupport implements W
 
     @Bean
     public DataClient dataClient() {
-        return new DataClient(s3Client(), properties.getS3().getBucket(), properties.getRootContext());
+        return new DataClient(s3Client(), properties.getS3().getBucket(), properties.getRootContext(),
+                properties.getS3().getPartSize(), properties.getS3().getUploadConcurrency(), properties.getS3().getUploadBuffers());
     }
 
     @Bean
@@ -26,5 +26,8 @@ public class WebDavConfigurationProperties {
         String accessKey;
         String secretAccessKey;
         String bucket;
+        int partSize = 8;
+        int uploadConcurrency = 4;
+        int uploadBuffers = 16;
     }
 }
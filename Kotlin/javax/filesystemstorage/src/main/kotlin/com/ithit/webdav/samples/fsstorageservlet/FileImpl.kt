@@ -1,7 +1,6 @@
 package com.ithit.webdav.samples.fsstorageservlet
 
 import com.ithit.webdav.integration.extendedattributes.ExtendedAttributesExtension
-import com.ithit.webdav.integration.utils.SerializationUtils
 import com.ithit.webdav.server.*
 import com.ithit.webdav.server.exceptions.ConflictException
 import com.ithit.webdav.server.exceptions.LockedException
@@ -50,8 +49,7 @@ private constructor(name: String, path: String, created: Long, modified: Long, e
     private val serialNumber: String
         @Throws(ServerException::class)
         get() {
-            val serialJson = ExtendedAttributesExtension.getExtendedAttribute(fullPath.toString(), "SerialNumber")
-            val properties = SerializationUtils.deserializeList(Property::class.java, serialJson)
+            val properties = getAttributeList("SerialNumber", Property::class.java)
             return if (properties.size == 1) {
                 properties[0].xmlValueRaw
             } else "0"
@@ -269,7 +267,7 @@ private constructor(name: String, path: String, created: Long, modified: Long, e
             if (sn != "0") {
                 seNumber.value = (Integer.valueOf(sn) + 1).toString()
             }
-            ExtendedAttributesExtension.setExtendedAttribute(fullPath.toString(), "SerialNumber", SerializationUtils.serialize(listOf(seNumber)))
+            setAttributeList("SerialNumber", listOf(seNumber))
         } catch (ex: Exception) {
             engine.logger?.logError("Cannot update serial number.", ex)
         }
@@ -284,6 +282,8 @@ private constructor(name: String, path: String, created: Long, modified: Long, e
         } catch (e: IOException) {
             engine.logger?.logError("Tried to delete file in use.", e)
             throw ServerException(e)
+        } finally {
+            WebDavServlet.metadataCache.invalidateTree(fullPath)
         }
         engine.webSocketServer?.notifyDeleted(path, getWebSocketID())
         try {
@@ -311,6 +311,7 @@ private constructor(name: String, path: String, created: Long, modified: Long, e
         if (ExtendedAttributesExtension.hasExtendedAttribute(newPath.toString(), activeLocksAttribute)) {
             ExtendedAttributesExtension.deleteExtendedAttribute(newPath.toString(), activeLocksAttribute)
         }
+        WebDavServlet.metadataCache.invalidateTree(newPath)
         try {
             val currentPath = folder.path + encode(destName)
             engine.webSocketServer?.notifyCreated(currentPath, getWebSocketID())
@@ -335,6 +336,8 @@ private constructor(name: String, path: String, created: Long, modified: Long, e
             Files.move(fullPath, Paths.get(destinationFolder, destName), StandardCopyOption.REPLACE_EXISTING)
         } catch (e: IOException) {
             throw ServerException(e)
+        } finally {
+            WebDavServlet.metadataCache.invalidateTree(fullPath)
         }
 
         setName(destName)
@@ -342,6 +345,7 @@ private constructor(name: String, path: String, created: Long, modified: Long, e
         if (ExtendedAttributesExtension.hasExtendedAttribute(newPath.toString(), activeLocksAttribute)) {
             ExtendedAttributesExtension.deleteExtendedAttribute(newPath.toString(), activeLocksAttribute)
         }
+        WebDavServlet.metadataCache.invalidateTree(newPath)
         try {
             val currentPath = folder.path + encode(destName)
             engine.webSocketServer?.notifyMoved(path, currentPath, getWebSocketID())
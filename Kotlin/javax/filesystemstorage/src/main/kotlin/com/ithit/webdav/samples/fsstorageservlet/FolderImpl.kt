@@ -135,6 +135,8 @@ private constructor(name: String, path: String, created: Long, modified: Long,
             FileUtils.deleteDirectory(fullPath.toFile())
         } catch (e: IOException) {
             throw ServerException(e)
+        } finally {
+            WebDavServlet.metadataCache.invalidateTree(fullPath)
         }
         engine.webSocketServer?.notifyDeleted(path, getWebSocketID())
     }
@@ -154,6 +156,7 @@ private constructor(name: String, path: String, created: Long, modified: Long,
             val sourcePath = this.fullPath
             val destinationFullPath = Paths.get(destinationFolder, destName)
             FileUtils.copyDirectory(sourcePath.toFile(), destinationFullPath.toFile())
+            WebDavServlet.metadataCache.invalidateTree(destinationFullPath)
             addIndex(destinationFullPath, folder.path + destName, destName)
         } catch (e: IOException) {
             throw ServerException(e)
@@ -248,6 +251,8 @@ private constructor(name: String, path: String, created: Long, modified: Long,
         try {
             removeIndex(fullPath, this)
             Files.move(sourcePath, destinationFullPath, StandardCopyOption.REPLACE_EXISTING)
+            WebDavServlet.metadataCache.invalidateTree(sourcePath)
+            WebDavServlet.metadataCache.invalidateTree(destinationFullPath)
             addIndex(destinationFullPath, folder.path + destName, destName)
         } catch (e: IOException) {
             throw ServerException(e)
@@ -216,12 +216,55 @@ internal abstract class HierarchyItemImpl
     @Throws(ServerException::class)
     private fun getProperties(): MutableList<Property> {
         if (properties == null) {
-            val propertiesJson = ExtendedAttributesExtension.getExtendedAttribute(fullPath.toString(), propertiesAttribute)
-            properties = SerializationUtils.deserializeList(Property::class.java, propertiesJson).toMutableList()
+            properties = getAttributeList(propertiesAttribute, Property::class.java)
         }
         return properties as MutableList<Property>
     }
 
+    /**
+     * Returns list stored in the extended attribute of this item. Served from [MetadataCache] if possible.
+     *
+     * @param attribute Extended attribute name.
+     * @param type      Type of the list elements.
+     * @return List of attribute values or empty list if attribute is not set.
+     * @throws ServerException in case of reading exception.
+     */
+    @Throws(ServerException::class)
+    fun <T> getAttributeList(attribute: String, type: Class<T>): MutableList<T> {
+        return WebDavServlet.metadataCache.getList(fullPath, modified, attribute, type)
+    }
+
+    /**
+     * Serializes list to the extended attribute of this item and invalidates cached value.
+     *
+     * @param attribute Extended attribute name.
+     * @param value     List to store.
+     * @throws ServerException in case of writing exception.
+     */
+    @Throws(ServerException::class)
+    fun setAttributeList(attribute: String, value: List<*>) {
+        try {
+            ExtendedAttributesExtension.setExtendedAttribute(fullPath.toString(), attribute, SerializationUtils.serialize(value))
+        } finally {
+            WebDavServlet.metadataCache.invalidate(fullPath, attribute)
+        }
+    }
+
+    /**
+     * Deletes extended attribute of this item and invalidates cached value.
+     *
+     * @param attribute Extended attribute name.
+     * @throws ServerException in case of writing exception.
+     */
+    @Throws(ServerException::class)
+    fun deleteAttribute(attribute: String) {
+        try {
+            ExtendedAttributesExtension.deleteExtendedAttribute(fullPath.toString(), attribute)
+        } finally {
+            WebDavServlet.metadataCache.invalidate(fullPath, attribute)
+        }
+    }
+
     /**
      * Returns Metadata ETag stored in extended attributes.
      * @return Metadata ETag.
@@ -229,11 +272,7 @@ internal abstract class HierarchyItemImpl
      */
     @Throws(ServerException::class)
     private fun getMetadataEtag(): String {
-        val serialJson =
-            ExtendedAttributesExtension.getExtendedAttribute(fullPath.toString(), METADATA_ETAG)
-        val metadataProperties = SerializationUtils.deserializeList(
-            Property::class.java, serialJson
-        )
+        val metadataProperties = getAttributeList(METADATA_ETAG, Property::class.java)
         if (metadataProperties.size == 1) {
             return metadataProperties[0].xmlValueRaw
         }
@@ -250,11 +289,7 @@ internal abstract class HierarchyItemImpl
             if (sn != "0") {
                 metadataEtag.value = (sn.toInt() + 1).toString()
             }
-            ExtendedAttributesExtension.setExtendedAttribute(
-                fullPath.toString(), METADATA_ETAG, SerializationUtils.serialize(
-                    listOf<Property>(metadataEtag)
-                )
-            )
+            setAttributeList(METADATA_ETAG, listOf<Property>(metadataEtag))
         } catch (ex: java.lang.Exception) {
             engine.logger?.logError("Cannot update metadata etag.", ex)
         }
@@ -268,11 +303,7 @@ internal abstract class HierarchyItemImpl
      */
     @Throws(ServerException::class)
     override fun getPropertyNames(): List<Property> {
-        if (ExtendedAttributesExtension.hasExtendedAttribute(fullPath.toString(), propertiesAttribute)) {
-            val propJson = ExtendedAttributesExtension.getExtendedAttribute(fullPath.toString(), propertiesAttribute)
-            return SerializationUtils.deserializeList(Property::class.java, propJson)
-        }
-        return LinkedList()
+        return getAttributeList(propertiesAttribute, Property::class.java)
     }
 
     /**
@@ -344,7 +375,7 @@ internal abstract class HierarchyItemImpl
         properties = properties!!.stream()
                 .filter { e -> !propNamesToDel.contains(e.name) }
                 .collect(Collectors.toList())
-        ExtendedAttributesExtension.setExtendedAttribute(fullPath.toString(), propertiesAttribute, SerializationUtils.serialize(properties as List<Property>))
+        setAttributeList(propertiesAttribute, properties as List<Property>)
         incrementMetadataEtag()
         engine.webSocketServer?.notifyUpdated(getPath(), getWebSocketID())
     }
@@ -406,7 +437,7 @@ internal abstract class HierarchyItemImpl
         val expires = System.currentTimeMillis() + localTimeout * 1000
         val lockInfo = LockInfo(shared, deep, token, expires, owner)
         activeLocks!!.add(lockInfo)
-        ExtendedAttributesExtension.setExtendedAttribute(fullPath.toString(), activeLocksAttribute, SerializationUtils.serialize<List<LockInfo>>(activeLocks!!))
+        setAttributeList(activeLocksAttribute, activeLocks!!)
         incrementMetadataEtag()
         engine.webSocketServer?.notifyLocked(getPath(), getWebSocketID())
         return LockResult(token, localTimeout)
@@ -433,13 +464,7 @@ internal abstract class HierarchyItemImpl
      */
     @Throws(ServerException::class)
     override fun getActiveLocks(): List<LockInfo> {
-        activeLocks = if (activeLocks == null) {
-            val activeLocksJson =
-                ExtendedAttributesExtension.getExtendedAttribute(fullPath.toString(), activeLocksAttribute)
-            ArrayList(SerializationUtils.deserializeList(LockInfo::class.java, activeLocksJson))
-        } else {
-            LinkedList()
-        }
+        activeLocks = getAttributeList(activeLocksAttribute, LockInfo::class.java)
         return activeLocks!!.stream()
             .filter { x -> System.currentTimeMillis() < x.timeout }
             .map { lock ->
@@ -468,9 +493,9 @@ internal abstract class HierarchyItemImpl
         if (lock != null) {
             activeLocks!!.remove(lock)
             if (activeLocks!!.isNotEmpty()) {
-                ExtendedAttributesExtension.setExtendedAttribute(fullPath.toString(), activeLocksAttribute, SerializationUtils.serialize<List<LockInfo>>(activeLocks!!))
+                setAttributeList(activeLocksAttribute, activeLocks!!)
             } else {
-                ExtendedAttributesExtension.deleteExtendedAttribute(fullPath.toString(), activeLocksAttribute)
+                deleteAttribute(activeLocksAttribute)
             }
             incrementMetadataEtag()
             engine.webSocketServer?.notifyUnlocked(getPath(), getWebSocketID())
@@ -501,7 +526,7 @@ internal abstract class HierarchyItemImpl
         }
         val expires = System.currentTimeMillis() + localTimeout * 1000
         lockInfo.timeout = expires
-        ExtendedAttributesExtension.setExtendedAttribute(fullPath.toString(), activeLocksAttribute, SerializationUtils.serialize<List<LockInfo>>(activeLocks!!))
+        setAttributeList(activeLocksAttribute, activeLocks!!)
         incrementMetadataEtag()
         engine.webSocketServer?.notifyLocked(getPath(), getWebSocketID())
         return RefreshLockResult(lockInfo.isShared, lockInfo.isDeep,
@@ -0,0 +1,134 @@
+package com.ithit.webdav.samples.fsstorageservlet
+
+import com.ithit.webdav.integration.extendedattributes.ExtendedAttributesExtension
+import com.ithit.webdav.integration.utils.SerializationUtils
+import com.ithit.webdav.server.exceptions.ServerException
+import java.io.File
+import java.nio.file.Path
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide cache of the item metadata stored in extended attributes (custom properties, locks, ETags).
+ * Entries are keyed by the full path of the item and are valid only while the item modification time
+ * is the same as when the attribute was read. Attributes written by this server are invalidated on write,
+ * so the next read picks up the new value. Attribute values are kept serialized, so the elements returned
+ * to one caller are never shared with the cache or with the other callers.
+ *
+ * @param maxEntries Maximum number of items to keep metadata for. Least recently used items are evicted first.
+ */
+internal class MetadataCache(private val maxEntries: Int) {
+
+    private val entries = object : LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>?): Boolean {
+            return size > maxEntries
+        }
+    }
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private var version: Long = 0
+
+    /**
+     * Returns number of metadata reads served from cache.
+     */
+    val hitCount: Long
+        get() = hits.get()
+
+    /**
+     * Returns number of metadata reads that required reading extended attributes.
+     */
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * Returns list stored in the extended attribute of the item. Reads the attribute only if it is not cached
+     * or cached value was read for the other modification time of the item. The list is deserialized on each
+     * call, so both the list and its elements may be modified by the caller.
+     *
+     * @param path      Full path of the item in the file system.
+     * @param modified  Modification time of the item.
+     * @param attribute Extended attribute name.
+     * @param type      Type of the list elements.
+     * @return New list of new elements.
+     * @throws ServerException in case of reading exception.
+     */
+    @Throws(ServerException::class)
+    fun <T> getList(path: Path, modified: Long, attribute: String, type: Class<T>): MutableList<T> {
+        val json = getJson(path, modified, attribute)
+        return ArrayList(SerializationUtils.deserializeList(type, json))
+    }
+
+    @Throws(ServerException::class)
+    private fun getJson(path: Path, modified: Long, attribute: String): String? {
+        val key = toKey(path)
+        val loadVersion: Long
+        synchronized(this) {
+            val entry = entries[key]
+            if (entry != null && entry.modified == modified && entry.attributes.containsKey(attribute)) {
+                hits.incrementAndGet()
+                return entry.attributes[attribute]
+            }
+            loadVersion = version
+        }
+        misses.incrementAndGet()
+        val json = ExtendedAttributesExtension.getExtendedAttribute(path.toString(), attribute)
+        synchronized(this) {
+            // Attribute may have been changed while we were reading it, do not cache the stale value then.
+            if (loadVersion == version) {
+                var entry = entries[key]
+                if (entry == null || entry.modified != modified) {
+                    entry = Entry(modified)
+                    entries[key] = entry
+                }
+                entry.attributes[attribute] = json
+            }
+        }
+        return json
+    }
+
+    /**
+     * Removes cached value of the attribute. Must be called after the attribute is changed.
+     *
+     * @param path      Full path of the item in the file system.
+     * @param attribute Extended attribute name.
+     */
+    @Synchronized
+    fun invalidate(path: Path, attribute: String) {
+        version++
+        entries[toKey(path)]?.attributes?.remove(attribute)
+    }
+
+    /**
+     * Removes cached metadata of the item and all items in its subtree.
+     * Must be called when item is deleted, moved or overwritten.
+     *
+     * @param path Full path of the item in the file system.
+     */
+    @Synchronized
+    fun invalidateTree(path: Path) {
+        version++
+        val key = toKey(path)
+        val prefix = if (key.endsWith(File.separator)) key else key + File.separator
+        entries.keys.removeIf { it == key || it.startsWith(prefix) }
+    }
+
+    @Synchronized
+    override fun toString(): String {
+        return "Metadata cache: ${entries.size} items, ${hits.get()} hits, ${misses.get()} misses"
+    }
+
+    private fun toKey(path: Path): String {
+        return path.toAbsolutePath().normalize().toString()
+    }
+
+    /**
+     * Serialized attributes of a single item.
+     */
+    private class Entry(val modified: Long) {
+        val attributes: MutableMap<String, String?> = HashMap()
+    }
+
+    companion object {
+        const val DEFAULT_SIZE = 10000
+    }
+}
@@ -59,6 +59,13 @@ class WebDavServlet : HttpServletDav() {
             } catch (ignored: NumberFormatException) {
             }
         }
+        val metadataCacheSize = servletConfig.getInitParameter("metadata-cache-size")
+        if (metadataCacheSize != null) {
+            try {
+                metadataCache = MetadataCache(Integer.parseInt(metadataCacheSize))
+            } catch (ignored: NumberFormatException) {
+            }
+        }
         if (rootLocalPath != null && indexLocalPath != null) {
             searchFacade = SearchFacade(engine, logger as HttpServletLoggerImpl)
             searchFacade!!.indexRootFolder(rootLocalPath!!, indexLocalPath, interval)
@@ -70,6 +77,7 @@ class WebDavServlet : HttpServletDav() {
      */
     override fun destroy() {
         searchFacade!!.indexer!!.stop()
+        logger?.logDebug(metadataCache.toString())
     }
 
     private fun checkRootPath(rootPath: String?) {
@@ -168,6 +176,13 @@ class WebDavServlet : HttpServletDav() {
          */
         internal var isSupportsUserDefinedAttributes: Boolean = false
             private set
+        /**
+         * Returns process-wide cache of the items metadata stored in extended attributes.
+         *
+         * @return Metadata cache.
+         */
+        internal var metadataCache: MetadataCache = MetadataCache(MetadataCache.DEFAULT_SIZE)
+            private set
         internal val START_TIME = "" + System.currentTimeMillis()
     }
 }